@@ -0,0 +1,83 @@
+import benchmarks.Workloads;
+import java.util.ArrayList;
+import java.util.List;
+
+// Application side of the JMH benchmarks (see benchmarks.Workloads): synthetic customers and the calls
+// the GUI and BatchRunner make on them. Loaded by name from the benchmarks, which cannot import it.
+public class BenchmarkWorkloads implements Workloads {
+    private static final String[] REGIONS = DatasetGenerator.getRegions();
+
+    private CustomerRegistry registry;
+    private List<OldCustomer> plainList;
+    private String[] meterCodes;
+    private final Operator operator = new Operator("Benchmark");
+    private final Admin admin = new Admin("Benchmark");
+
+    // The same customers "BatchRunner generate" writes for that seed
+    @Override
+    public void generate(int customers, long seed) {
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        registry = new CustomerRegistry();
+        plainList = new ArrayList<>(customers);
+        meterCodes = new String[customers];
+        for (int i = 0; i < customers; i++) {
+            OldCustomer customer = generator.customer(i);
+            meterCodes[i] = customer.getMeterCode();
+            plainList.add(customer);
+        }
+        registry.addAll(plainList);
+    }
+
+    @Override
+    public int getCustomerCount() {
+        return meterCodes.length;
+    }
+
+    @Override
+    public int getRegionCount() {
+        return REGIONS.length;
+    }
+
+    @Override
+    public boolean writeCustomers(String filename, boolean binary) {
+        return saveCustomers(filename, binary);
+    }
+
+    @Override
+    public int loadCustomers(String filename) {
+        CustomerRegistry loaded = new CustomerRegistry();
+        return FileSystem.loadCustomersFromFile(loaded, filename) ? loaded.size() : -1;
+    }
+
+    @Override
+    public boolean saveCustomers(String filename, boolean binary) {
+        return binary ? BinarySnapshot.save(registry, filename) : FileSystem.saveCustomerText(registry, filename);
+    }
+
+    @Override
+    public Object findByMeterCode(int i, boolean indexed) {
+        return OldCustomer.findCustomerByMeterCode(indexed ? registry : plainList, meterCodes[i]);
+    }
+
+    @Override
+    public String regionBills(int region, boolean indexed) {
+        return operator.getBillsByRegion(indexed ? registry : plainList, REGIONS[region]);
+    }
+
+    @Override
+    public String regionStatistics(int region, boolean indexed) {
+        return admin.makeConsumptionStatistics(indexed ? registry : plainList, REGIONS[region]);
+    }
+
+    @Override
+    public String defineTariff(int i, int pricePerUnit) {
+        return operator.defineTariff(registry.get(i), pricePerUnit);
+    }
+
+    @Override
+    public String collectPayment(int i, int amount) {
+        OldCustomer customer = registry.get(i);
+        customer.setBalanceDue(amount); // Payments must match the balance exactly
+        return operator.collectPayment(customer, amount);
+    }
+}
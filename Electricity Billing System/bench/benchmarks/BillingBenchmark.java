@@ -0,0 +1,30 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Billing a random customer (Operator.defineTariff at a flat price) and collecting a payment from one
+// (Operator.collectPayment), both on customers held by a CustomerRegistry.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+public class BillingBenchmark {
+
+    @Benchmark
+    public String defineTariff(Dataset dataset, Dataset.Cursor cursor) {
+        return dataset.workloads.defineTariff(cursor.next(dataset.customers), 1);
+    }
+
+    @Benchmark
+    public String collectPayment(Dataset dataset, Dataset.Cursor cursor) {
+        return dataset.workloads.collectPayment(cursor.next(dataset.customers), 150);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Loading and saving the customers file (FileSystem.loadCustomersFromFile, saveCustomerText and
+// BinarySnapshot), in whole files per second. The files go to the temporary directory.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class CustomerFileBenchmark {
+    @Param({ "text", "binary" })
+    public String format;
+
+    private File loadFile;
+    private File saveFile;
+
+    @Setup(Level.Trial)
+    public void writeFile(Dataset dataset) throws IOException {
+        loadFile = File.createTempFile("customers-load", ".dat");
+        saveFile = File.createTempFile("customers-save", ".dat");
+        if (!dataset.workloads.writeCustomers(loadFile.getPath(), format.equals("binary"))) {
+            throw new IOException("Could not write " + loadFile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        loadFile.delete();
+        saveFile.delete();
+    }
+
+    @Benchmark
+    public int load(Dataset dataset) {
+        return dataset.workloads.loadCustomers(loadFile.getPath());
+    }
+
+    @Benchmark
+    public boolean save(Dataset dataset) {
+        return dataset.workloads.saveCustomers(saveFile.getPath(), format.equals("binary"));
+    }
+}
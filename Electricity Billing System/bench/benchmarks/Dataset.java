@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The synthetic customers every benchmark runs against, generated once per trial (the same customers
+// for every run, so results can be compared across changes). Narrow the sizes with -p customers=10000.
+@State(Scope.Benchmark)
+public class Dataset {
+    private static final long SEED = 20240101L;
+
+    @Param({ "10000", "100000", "1000000", "5000000" })
+    public int customers;
+
+    public Workloads workloads;
+
+    @Setup(Level.Trial)
+    public void generate() throws ReflectiveOperationException {
+        workloads = (Workloads) Class.forName("BenchmarkWorkloads").newInstance();
+        workloads.generate(customers, SEED);
+    }
+
+    // Picks customers spread over the whole dataset, so lookups are not served from one cache line.
+    // Xorshift instead of java.util.Random: no locking, and nothing to allocate in the measured code.
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int state = (int) System.nanoTime() | 1;
+
+        public int next(int bound) {
+            state ^= state << 13;
+            state ^= state >>> 17;
+            state ^= state << 5;
+            return (state >>> 1) % bound;
+        }
+    }
+}
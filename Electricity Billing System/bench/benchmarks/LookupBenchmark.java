@@ -0,0 +1,31 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// OldCustomer.findCustomerByMeterCode with a random meter code: through the CustomerRegistry's
+// hash index, and by the linear scan a plain list still gets.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    @Param({ "registry", "list" })
+    public String customerList;
+
+    @Benchmark
+    public Object findByMeterCode(Dataset dataset, Dataset.Cursor cursor) {
+        return dataset.workloads.findByMeterCode(cursor.next(dataset.customers), customerList.equals("registry"));
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Region reports, the bills of a region (Operator.getBillsByRegion) and its consumption statistics
+// (Admin.makeConsumptionStatistics): from the CustomerRegistry's RegionIndex, and by scanning a plain list.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class RegionReportBenchmark {
+    @Param({ "registry", "list" })
+    public String customerList;
+
+    @Benchmark
+    public String regionBills(Dataset dataset, Dataset.Cursor cursor) {
+        return dataset.workloads.regionBills(cursor.next(dataset.workloads.getRegionCount()), customerList.equals("registry"));
+    }
+
+    @Benchmark
+    public String regionStatistics(Dataset dataset, Dataset.Cursor cursor) {
+        return dataset.workloads.regionStatistics(cursor.next(dataset.workloads.getRegionCount()), customerList.equals("registry"));
+    }
+}
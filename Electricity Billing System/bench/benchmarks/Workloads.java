@@ -0,0 +1,38 @@
+package benchmarks;
+
+// The operations the benchmarks measure, implemented by BenchmarkWorkloads next to the application
+// classes. JMH only accepts benchmarks in a named package, and a named package cannot refer to the
+// application's default-package classes, so the benchmarks reach them through this interface
+// (an interface call the JIT inlines, unlike reflection).
+public interface Workloads {
+
+    // Builds `customers` synthetic customers in memory, the same ones for the same seed, spread over
+    // regions of very different sizes. Kept both in a CustomerRegistry and in a plain list.
+    void generate(int customers, long seed);
+
+    int getCustomerCount();
+
+    int getRegionCount();
+
+    // Writes the generated customers to a file in the text (customers.txt) or binary snapshot format
+    boolean writeCustomers(String filename, boolean binary);
+
+    // Loads a customers file into a new registry; returns the number of customers loaded
+    int loadCustomers(String filename);
+
+    boolean saveCustomers(String filename, boolean binary);
+
+    // Looks up the i-th customer by meter code, in the registry's index or by scanning the plain list
+    Object findByMeterCode(int i, boolean indexed);
+
+    // Operator.getBillsByRegion / Admin.makeConsumptionStatistics for one region
+    String regionBills(int region, boolean indexed);
+
+    String regionStatistics(int region, boolean indexed);
+
+    // Operator.defineTariff at a flat price for the i-th customer
+    String defineTariff(int i, int pricePerUnit);
+
+    // Gives the i-th customer a balance and has an operator collect exactly that amount
+    String collectPayment(int i, int amount);
+}
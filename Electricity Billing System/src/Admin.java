@@ -24,56 +24,69 @@ public class Admin {
     public String viewAllBillsByRegion(List<OldCustomer> customers, String region) {
         StringBuilder sb = new StringBuilder("📋 Bills in Region: " + region + "\n");
         boolean found = false;
-        for (OldCustomer customer : customers) {
-            if ((customer.getRegion()).equalsIgnoreCase(region.trim())) {
-                sb.append("--------------------\n");
-                sb.append("Customer: ").append(customer.getName()).append(" (Meter: ").append(customer.getMeterCode()).append(")\n");
-                sb.append("- Balance Due: ").append(customer.getBalanceDue()).append(" EGP\n");
-                found = true;
-            }
+        for (OldCustomer customer : RegionIndex.customersIn(customers, region)) {
+            sb.append("--------------------\n");
+            sb.append("Customer: ").append(customer.getName()).append(" (Meter: ").append(customer.getMeterCode()).append(")\n");
+            sb.append("- Balance Due: ").append(customer.getBalanceDue()).append(" EGP\n");
+            found = true;
         }
         if (!found) {
             sb.append("No customers found in this region.\n");
+        } else if (customers instanceof CustomerRegistry) {
+            RegionIndex.Bucket bucket = ((CustomerRegistry) customers).getRegionIndex().getBucket(region);
+            sb.append("--------------------\n");
+            sb.append("Total Balance Due in region: ").append(bucket.getTotalBalanceDue()).append(" EGP\n");
         }
         return sb.toString();
     }
 
     // Method to view total collected by all operators, returns a formatted string for GUI
+    // With an OperatorRegistry the running grand total is read instead of summing every operator
     public String viewTotalCollected(List<Operator> operators) {
-        int total = 0;
-        for (Operator operator : operators) {
+        long total = 0;
+        if (operators instanceof OperatorRegistry) {
+            total = ((OperatorRegistry) operators).getGrandTotal();
+        } else for (Operator operator : operators) {
             total += operator.getTotalCollected();
         }
         return "💰 Total Collected by all operators: " + total + " EGP.";
     }
 
     // Method to make consumption statistics by region, returns a formatted string for GUI
+    // With a CustomerRegistry the region's running totals and distribution are used instead of scanning
     public String makeConsumptionStatistics(List<OldCustomer> customers, String region) {
-        int totalConsumption = 0;
+        long totalConsumption = 0;
         int count = 0;
-        for (OldCustomer customer : customers) {
+        ConsumptionStats stats = new ConsumptionStats();
+        if (customers instanceof CustomerRegistry) {
+            RegionIndex.Bucket bucket = ((CustomerRegistry) customers).getRegionIndex().getBucket(region);
+            if (bucket != null) {
+                totalConsumption = bucket.getTotalConsumption();
+                count = bucket.getCustomerCount();
+                stats = bucket.getConsumptionStats();
+            }
+        } else for (OldCustomer customer : customers) {
             if ((customer.getRegion()).equalsIgnoreCase(region.trim())) {
                 totalConsumption += (customer.getCurrentReading() - customer.getLastReading());
                 count++;
+                stats.add(customer.getCurrentReading() - customer.getLastReading());
             }
         }
         if (count == 0) {
             return "📈 No customers found in region " + region + " for consumption statistics.";
         }
-        return "📈 Consumption in " + region + ": " + totalConsumption + " units for " + count + " customers.";
+        return "📈 Consumption in " + region + ": " + totalConsumption + " units for " + count + " customers.\n" + stats;
     }
 
     // Method to add a new customer (NewCustomer object created by GUI)
     // Returns a status message for GUI
     public String addNewCustomer(List<OldCustomer> oldCustomersList, NewCustomer newCustomerToAdd) {
         // Check for duplicates based on NID or Meter Code before adding
-        for (OldCustomer existingCustomer : oldCustomersList) {
-            if (existingCustomer.getNid().equals(newCustomerToAdd.getNid())) {
-                return "Error: Customer with NID " + newCustomerToAdd.getNid() + " already exists.";
-            }
-            if (existingCustomer.getMeterCode().equals(newCustomerToAdd.getMeterCode())) {
-                return "Error: Customer with Meter Code " + newCustomerToAdd.getMeterCode() + " already exists.";
-            }
+        if (OldCustomer.findCustomerByNid(oldCustomersList, newCustomerToAdd.getNid()) != null) {
+            return "Error: Customer with NID " + newCustomerToAdd.getNid() + " already exists.";
+        }
+        if (OldCustomer.findCustomerByMeterCode(oldCustomersList, newCustomerToAdd.getMeterCode()) != null) {
+            return "Error: Customer with Meter Code " + newCustomerToAdd.getMeterCode() + " already exists.";
         }
         
         OldCustomer customerToAddAsOld = new OldCustomer(
@@ -88,7 +101,14 @@ public class Admin {
         // Contract info from NewCustomer is not directly stored in OldCustomer in the current model
         // If it needs to be, OldCustomer or a new structure would need to accommodate it.
 
-        oldCustomersList.add(customerToAddAsOld);
+        if (oldCustomersList instanceof CustomerRegistry) {
+            // Someone else may have registered the same NID or meter code since the checks above
+            if (!((CustomerRegistry) oldCustomersList).addIfAbsent(customerToAddAsOld)) {
+                return "Error: Customer with NID " + newCustomerToAdd.getNid() + " or Meter Code " + newCustomerToAdd.getMeterCode() + " already exists.";
+            }
+        } else {
+            oldCustomersList.add(customerToAddAsOld);
+        }
         // FileSystem.saveCustomerData will be called by the GUI controller
         return "✅ New Customer added: " + newCustomerToAdd.getName() + " (Meter: " + newCustomerToAdd.getMeterCode() + ")";
     }
@@ -99,11 +119,13 @@ public class Admin {
         if (customerToUpdate == null) {
             return "Error: Customer to update not found.";
         }
-        customerToUpdate.setName(newName);
-        customerToUpdate.setAddress(newAddress);
-        customerToUpdate.setEmail(newEmail); // Assumes setEmail in Customer is adapted for direct string input
-        customerToUpdate.setRegion(newRegion);
-        customerToUpdate.setNumber(newPhoneNumber); // Assumes setNumber in Customer is adapted for long input
+        synchronized (customerToUpdate.getLock()) {
+            customerToUpdate.setName(newName);
+            customerToUpdate.setAddress(newAddress);
+            customerToUpdate.setEmail(newEmail); // Assumes setEmail in Customer is adapted for direct string input
+            customerToUpdate.setRegion(newRegion);
+            customerToUpdate.setNumber(newPhoneNumber); // Assumes setNumber in Customer is adapted for long input
+        }
         // FileSystem.saveCustomerData will be called by the GUI controller
         return "✅ Customer details updated for: " + customerToUpdate.getName() + " (Meter: " + customerToUpdate.getMeterCode() + ")";
     }
@@ -111,13 +133,7 @@ public class Admin {
     // Method to delete a customer by meter code
     // Returns a status message for GUI
     public String deleteCustomerByMeterCode(List<OldCustomer> customers, String meterCode) {
-        OldCustomer customerToRemove = null;
-        for (OldCustomer customer : customers) {
-            if (customer.getMeterCode().equalsIgnoreCase(meterCode)) {
-                customerToRemove = customer;
-                break;
-            }
-        }
+        OldCustomer customerToRemove = OldCustomer.findCustomerByMeterCode(customers, meterCode);
         if (customerToRemove != null) {
             customers.remove(customerToRemove);
             // FileSystem.saveCustomerData will be called by the GUI controller
@@ -0,0 +1,209 @@
+import java.io.*;
+
+// Base for the streaming file imports (meter readings, payments, ...).
+// Reads the input line by line, hands each record to applyRecord, writes rejected records with the
+// reason to a side file, and commits the customer journal once per batch instead of once per record.
+// Blank lines and lines starting with '#' are ignored; a header line is skipped if isHeader says so,
+// and control records (file headers, trailers) are consumed by isControlRecord without being counted.
+// If a batch cannot be committed, an applied record cannot be journaled (applyRecord throws
+// IOException) or the input stops being readable, the import stops there. The
+// result then tells up to which input line the records are saved, so a re-run can start after it
+// instead of applying the earlier records twice.
+public abstract class BatchImport {
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    protected final CustomerJournal journal;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    protected BatchImport(CustomerJournal journal) {
+        this.journal = journal;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    // Applies one record. Returns null if it was applied, or the reason it was rejected.
+    // Throws IOException if the record was applied but cannot be saved, which stops the import.
+    protected abstract String applyRecord(String line) throws IOException;
+
+    // Whether the first record line is a column header rather than data
+    protected boolean isHeader(String line) {
+        return false;
+    }
+
+    // Whether the line is a control record rather than data; subclasses may take its values
+    protected boolean isControlRecord(String line) {
+        return false;
+    }
+
+    // Called after each batch once the journal records are flushed; subclasses can flush other outputs
+    protected boolean commitBatch() {
+        return true;
+    }
+
+    // Imports a file, writing rejects (if any) to rejectsFile. Returns null if the input cannot be opened;
+    // an import that stopped partway returns a result that is not complete (Result.isComplete).
+    public Result importFile(String inputFile, String rejectsFile) {
+        try (BufferedReader in = new BufferedReader(new FileReader(inputFile), 1 << 16);
+             RejectWriter rejects = new RejectWriter(rejectsFile)) {
+            return importFrom(in, rejects);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public Result importFrom(BufferedReader in, Writer rejects) {
+        Result result = new Result();
+        long start = System.nanoTime();
+        boolean autoCommit = journal.isAutoCommit();
+        journal.setAutoCommit(false);
+        int lineNumber = 0;
+        try {
+            String line;
+            int inBatch = 0;
+            boolean firstRecord = true;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.charAt(0) == '#' || line.trim().isEmpty()) {
+                    continue;
+                }
+                if (firstRecord) {
+                    firstRecord = false;
+                    if (isHeader(line)) continue;
+                }
+                if (isControlRecord(line)) {
+                    continue;
+                }
+                result.read++;
+                String reason;
+                try {
+                    reason = applyRecord(line);
+                } catch (RuntimeException e) {
+                    reason = "Malformed record (" + e.getMessage() + ")";
+                }
+                if (reason == null) {
+                    result.applied++;
+                    if (++inBatch >= batchSize) {
+                        commit(result, lineNumber);
+                        inBatch = 0;
+                    }
+                } else {
+                    result.rejected++;
+                    if (rejects != null) {
+                        rejects.write(lineNumber + "\t" + reason + "\t" + line + "\n");
+                    }
+                }
+            }
+            if (inBatch > 0) {
+                commit(result, lineNumber);
+            }
+            result.committedLine = lineNumber; // Everything read is saved, trailing comments included
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Records applied after committedLine are changed in memory but may not be saved
+            result.failure = "Stopped at line " + lineNumber + ": " + e.getMessage();
+        } finally {
+            result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            journal.setAutoCommit(autoCommit);
+        }
+        if (result.failure == null) {
+            // One last commit lets the journal compact if the import pushed it over its threshold.
+            // Not after a failure: the snapshot would save the records the result reports as unsaved.
+            journal.commit();
+        }
+        return result;
+    }
+
+    private void commit(Result result, int lineNumber) throws IOException {
+        if (!journal.flush() || !commitBatch()) {
+            throw new IOException("could not commit batch " + (result.batches + 1));
+        }
+        result.batches++;
+        result.committedLine = lineNumber;
+    }
+
+    // Parses a non-negative decimal int from s[from, to) without allocating, ignoring surrounding spaces
+    protected static int parseInt(String s, int from, int to) {
+        while (from < to && s.charAt(from) == ' ') from++;
+        while (to > from && s.charAt(to - 1) == ' ') to--;
+        if (from == to) {
+            throw new NumberFormatException("empty number");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw new NumberFormatException("not a number: " + s.substring(from, to));
+            }
+            value = value * 10 + (ch - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("number too large: " + s.substring(from, to));
+            }
+        }
+        return (int) value;
+    }
+
+    // Only creates the rejects file once there is something to reject
+    private static class RejectWriter extends Writer {
+        private final String file;
+        private Writer out;
+
+        RejectWriter(String file) {
+            this.file = file;
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            if (file == null) return;
+            if (out == null) out = new BufferedWriter(new FileWriter(file));
+            out.write(buf, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.close();
+        }
+    }
+
+    // Counts of one import run
+    public static class Result {
+        private int read;
+        private int applied;
+        private int rejected;
+        private int batches;
+        private long elapsedMillis;
+        private int committedLine;  // Input line up to which every record is saved
+        private String failure;     // Why the import stopped early, null if it read the whole input
+
+        public int getRead() { return read; }
+        public int getApplied() { return applied; }
+        public int getRejected() { return rejected; }
+        public int getBatches() { return batches; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public int getCommittedLine() { return committedLine; }
+        public String getFailure() { return failure; }
+
+        public boolean isComplete() {
+            return failure == null;
+        }
+
+        public long getRecordsPerSecond() {
+            return elapsedMillis == 0 ? read : read * 1000L / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Read " + read + " records: " + applied + " applied, " + rejected + " rejected, "
+                    + batches + " batches committed (" + elapsedMillis + " ms, " + getRecordsPerSecond() + " records/s)."
+                    + (failure == null ? "" : "\nError: " + failure + ". Records up to line " + committedLine
+                            + " are saved, later ones may not be; import the file again from line " + (committedLine + 1) + ".");
+        }
+    }
+}
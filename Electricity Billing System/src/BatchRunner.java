@@ -0,0 +1,454 @@
+import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Command-line entry point for batch jobs, so billing and imports can run from cron without the GUI.
+// Started through elec.Elec (or directly); nothing here touches Swing, so startup stays quick.
+// Reports are written to stdout as they are produced instead of being built up as one big string.
+public class BatchRunner {
+    // Same data files the GUI uses (ElectricityBillingSystemGUI.CUSTOMERS_FILE / OPERATORS_FILE)
+    private static final String DEFAULT_CUSTOMERS_FILE = "Customers.txt";
+    private static final String DEFAULT_OPERATORS_FILE = "Operators.txt";
+    private static final String DEFAULT_LEDGER_FILE = PaymentLedger.DEFAULT_FILE;
+    private static final String DEFAULT_HISTORY_FILE = ReadingHistory.DEFAULT_FILE;
+    private static final String DEFAULT_INTERVALS_DIRECTORY = IntervalStore.DEFAULT_DIRECTORY;
+
+    private static final String USAGE =
+            "Usage: [--customers FILE] [--operators FILE] [--ledger FILE] [--history FILE] [--intervals DIR] COMMAND ARGS\n" +
+            "Commands:\n" +
+            "  bill PRICE_PER_UNIT|TARIFF_FILE            bill every active customer, flat or with a tariff table\n" +
+            "  import-customers FILE [REJECTS]            register new customers from name,nid,email,phone,region,address\n" +
+            "                                             records, giving each a new meter code\n" +
+            "  import-readings FILE [REJECTS]             import meterCode,reading records\n" +
+            "  import-intervals FILE [REJECTS]            import smart meter meterCode,yyyyMMddHHmm,wattHours records\n" +
+            "  close-period FROM TO                       turn smart meter intervals of FROM..TO (yyyy-MM-dd) into readings\n" +
+            "  import-payments OPERATOR FILE [REJECTS]    import meterCode,amount records credited to OPERATOR\n" +
+            "  import-lockbox OPERATOR FILE [REJECTS]     import a bank lockbox file credited to OPERATOR\n" +
+            "  report [REGION]                            bills of one region, or totals of every region\n" +
+            "  payments operator|meter NAME               payment history of an operator or a meter from the ledger\n" +
+            "  history meter|region NAME [FROM [TO]]      readings of a meter, or consumption of a region (dates yyyy-MM-dd)\n" +
+            "  convert-snapshot binary|text [TARGET]      rewrite the customers file (or a copy) in that format\n" +
+            "  generate DIR CUSTOMERS [SEED [OPERATORS]]  write a synthetic data set (customers, operators, readings,\n" +
+            "                                             payments) for load testing; the same SEED gives the same files\n";
+
+    private String customersFile = DEFAULT_CUSTOMERS_FILE;
+    private String operatorsFile = DEFAULT_OPERATORS_FILE;
+    private String ledgerFile = DEFAULT_LEDGER_FILE;
+    private String historyFile = DEFAULT_HISTORY_FILE;
+    private String intervalsDirectory = DEFAULT_INTERVALS_DIRECTORY;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    public BatchRunner(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new BatchRunner(System.out, System.err).run(args));
+    }
+
+    // Returns the process exit code: 0 on success, 1 if the job failed, 2 on bad usage
+    public int run(String[] args) {
+        int i = 0;
+        while (i < args.length && args[i].startsWith("--")) {
+            if (i + 1 >= args.length) return usage("Missing value for " + args[i]);
+            if (args[i].equals("--customers")) customersFile = args[i + 1];
+            else if (args[i].equals("--operators")) operatorsFile = args[i + 1];
+            else if (args[i].equals("--ledger")) ledgerFile = args[i + 1];
+            else if (args[i].equals("--history")) historyFile = args[i + 1];
+            else if (args[i].equals("--intervals")) intervalsDirectory = args[i + 1];
+            else return usage("Unknown option " + args[i]);
+            i += 2;
+        }
+        if (i >= args.length) return usage(null);
+        String command = args[i];
+        String[] rest = new String[args.length - i - 1];
+        System.arraycopy(args, i + 1, rest, 0, rest.length);
+        switch (command) {
+            case "bill": return bill(rest);
+            case "import-customers": return importCustomers(rest);
+            case "import-readings": return importReadings(rest);
+            case "import-intervals": return importIntervals(rest);
+            case "close-period": return closePeriod(rest);
+            case "import-payments": return importPayments(rest);
+            case "import-lockbox": return importLockbox(rest);
+            case "report": return report(rest);
+            case "payments": return payments(rest);
+            case "history": return history(rest);
+            case "convert-snapshot": return convertSnapshot(rest);
+            case "generate": return generate(rest);
+            default: return usage("Unknown command " + command);
+        }
+    }
+
+    private int bill(String[] args) {
+        if (args.length != 1) return usage("bill needs PRICE_PER_UNIT or TARIFF_FILE");
+        TariffTable tariffs;
+        if (args[0].matches("-?\\d+")) {
+            int price;
+            try {
+                price = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                return usage("Invalid price per unit: " + args[0]);
+            }
+            if (price <= 0) return usage("Error: Price per unit must be positive.");
+            tariffs = TariffTable.flat(price);
+        } else {
+            tariffs = TariffTable.load(args[0]);
+            if (tariffs == null) {
+                err.println("Error: could not load tariff table " + args[0]);
+                return 1;
+            }
+        }
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        BillingRun.Summary summary = new BillingRun(customers, tariffs).runAndCheckpoint(new CustomerJournal(customers, customersFile));
+        out.println(summary);
+        if (!summary.isCheckpointed()) {
+            err.println("Error: billing results could not be saved to " + customersFile);
+            return 1;
+        }
+        return 0;
+    }
+
+    private int importCustomers(String[] args) {
+        if (args.length < 1 || args.length > 2) return usage("import-customers needs FILE [REJECTS]");
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        CustomerJournal journal = new CustomerJournal(customers, customersFile);
+        String rejects = args.length > 1 ? args[1] : args[0] + ".rejects";
+        return printImportResult(new CustomerImport(customers, journal).importFile(args[0], rejects), rejects, journal);
+    }
+
+    private int importReadings(String[] args) {
+        if (args.length < 1 || args.length > 2) return usage("import-readings needs FILE [REJECTS]");
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        ReadingHistory history = ReadingHistory.open(historyFile);
+        if (history == null) {
+            err.println("Error: could not load " + historyFile);
+            return 1;
+        }
+        try {
+            customers.setReadingHistory(history);
+            CustomerJournal journal = new CustomerJournal(customers, customersFile);
+            String rejects = args.length > 1 ? args[1] : args[0] + ".rejects";
+            int status = printImportResult(new ReadingImport(customers, journal).importFile(args[0], rejects), rejects, journal);
+            if (history.needsCompaction() && !history.compact()) {
+                err.println("Error: could not compact " + historyFile);
+                status = 1;
+            }
+            return status;
+        } finally {
+            history.close();
+        }
+    }
+
+    private int importIntervals(String[] args) {
+        if (args.length < 1 || args.length > 2) return usage("import-intervals needs FILE [REJECTS]");
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        IntervalStore store = IntervalStore.open(intervalsDirectory);
+        if (store == null) {
+            err.println("Error: could not open " + intervalsDirectory);
+            return 1;
+        }
+        try {
+            CustomerJournal journal = new CustomerJournal(customers, customersFile);
+            String rejects = args.length > 1 ? args[1] : args[0] + ".rejects";
+            return printImportResult(new IntervalImport(customers, journal, store).importFile(args[0], rejects), rejects, journal);
+        } finally {
+            store.close();
+        }
+    }
+
+    private int closePeriod(String[] args) {
+        if (args.length != 2) return usage("close-period needs FROM TO");
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(args[0]);
+            to = LocalDate.parse(args[1]);
+        } catch (DateTimeParseException e) {
+            return usage("Invalid date: " + e.getParsedString());
+        }
+        if (to.isBefore(from)) return usage("Error: TO is before FROM.");
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        IntervalStore store = IntervalStore.open(intervalsDirectory);
+        if (store == null) {
+            err.println("Error: could not open " + intervalsDirectory);
+            return 1;
+        }
+        int applied;
+        boolean saved;
+        long start = System.nanoTime();
+        try {
+            ReadingHistory history = ReadingHistory.open(historyFile);
+            if (history == null) {
+                err.println("Error: could not open " + historyFile);
+                return 1;
+            }
+            try {
+                customers.setReadingHistory(history);
+                CustomerJournal journal = new CustomerJournal(customers, customersFile);
+                journal.setAutoCommit(false); // One commit for the whole period below
+                try {
+                    applied = store.closeBillingPeriod(customers, journal, from, to);
+                    saved = journal.commit() && history.flush();
+                } finally {
+                    journal.close();
+                }
+            } finally {
+                history.close();
+            }
+        } finally {
+            store.close();
+        }
+        if (applied < 0 || !saved) {
+            err.println("Error: the billing period could not be closed, see the log above.");
+            return 1;
+        }
+        out.println("✅ Readings for " + from + " to " + to + " entered for " + applied + " smart meters ("
+                + (System.nanoTime() - start) / 1_000_000 + " ms).");
+        return 0;
+    }
+
+    private int history(String[] args) {
+        if (args.length < 2 || args.length > 4 || !(args[0].equals("meter") || args[0].equals("region"))) return usage("history needs meter|region NAME [FROM [TO]]");
+        long from = 0;
+        long to = Long.MAX_VALUE;
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+        try {
+            if (args.length > 2) from = dateFormat.parse(args[2]).getTime() / 1000;
+            // TO is inclusive: up to the end of that day
+            if (args.length > 3) to = dateFormat.parse(args[3]).getTime() / 1000 + 24 * 60 * 60 - 1;
+        } catch (ParseException e) {
+            return usage("Invalid date: " + e.getMessage());
+        }
+        ReadingHistory history = ReadingHistory.open(historyFile);
+        if (history == null) {
+            err.println("Error: could not load " + historyFile);
+            return 1;
+        }
+        try {
+            PrintWriter w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+            if (args[0].equals("meter")) {
+                for (ReadingHistory.Reading reading : history.readings(args[1], from, to)) {
+                    w.println(reading);
+                }
+                w.println("# Consumption of " + args[1] + ": " + history.consumption(args[1], from, to) + " units");
+            } else {
+                CustomerRegistry customers = loadCustomers();
+                if (customers == null) return 1;
+                w.println("# Consumption of region " + args[1] + ": " + history.consumption(customers.customersInRegion(args[1]), from, to) + " units");
+            }
+            w.flush();
+            return w.checkError() ? 1 : 0;
+        } finally {
+            history.close();
+        }
+    }
+
+    private int importPayments(String[] args) {
+        if (args.length < 2 || args.length > 3) return usage("import-payments needs OPERATOR FILE [REJECTS]");
+        return importPayments(args, false);
+    }
+
+    private int importLockbox(String[] args) {
+        if (args.length < 2 || args.length > 3) return usage("import-lockbox needs OPERATOR FILE [REJECTS]");
+        String error = LockboxImport.verify(args[1]);
+        if (error != null) {
+            err.println("Error: " + args[1] + " was not imported: " + error);
+            return 1;
+        }
+        return importPayments(args, true);
+    }
+
+    private int importPayments(String[] args, boolean lockbox) {
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        List<Operator> operators = new OperatorRegistry();
+        PaymentLedger ledger = loadOperators(operators);
+        if (ledger == null) return 1;
+        try {
+            Operator operator = Operator.findOperatorByName(operators, args[0]);
+            if (operator == null) {
+                err.println("Error: operator \"" + args[0] + "\" not found in " + operatorsFile);
+                return 1;
+            }
+            CustomerJournal journal = new CustomerJournal(customers, customersFile);
+            String rejects = args.length > 2 ? args[2] : args[1] + ".rejects";
+            PaymentImport paymentImport = lockbox
+                    ? new LockboxImport(customers, journal, operators, operator, operatorsFile, ledger)
+                    : new PaymentImport(customers, journal, operators, operator, operatorsFile, ledger);
+            int status = printImportResult(paymentImport.importFile(args[1], rejects), rejects, journal);
+            // Leave Operators.txt current, so the next start has nothing to replay
+            if (!ledger.saveCheckpoint(ledger.checkpoint(operators), operatorsFile)) {
+                err.println("Error: could not save " + operatorsFile);
+                status = 1;
+            }
+            return status;
+        } finally {
+            ledger.close();
+        }
+    }
+
+    private int payments(String[] args) {
+        if (args.length != 2 || !(args[0].equals("operator") || args[0].equals("meter"))) return usage("payments needs operator|meter NAME");
+        List<Operator> operators = new OperatorRegistry();
+        PaymentLedger ledger = loadOperators(operators);
+        if (ledger == null) return 1;
+        try {
+            boolean byOperator = args[0].equals("operator");
+            List<PaymentLedger.Payment> payments = byOperator ? ledger.paymentsBy(args[1]) : ledger.paymentsFor(args[1]);
+            if (payments == null) {
+                err.println("Error: could not read " + ledgerFile);
+                return 1;
+            }
+            PrintWriter w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+            for (PaymentLedger.Payment payment : payments) {
+                w.println(payment);
+            }
+            long total = byOperator ? ledger.totalCollectedBy(args[1]) : ledger.totalPaidFor(args[1]);
+            w.println("# Ledger total for " + args[1] + ": " + total + " EGP");
+            if (byOperator) {
+                Operator operator = Operator.findOperatorByName(operators, args[1]);
+                if (operator != null) {
+                    // The operator's total also holds what was collected before the ledger existed
+                    w.println("# " + operatorsFile + " total: " + operator.getTotalCollected() + " EGP");
+                }
+            }
+            w.flush();
+            return w.checkError() ? 1 : 0;
+        } finally {
+            ledger.close();
+        }
+    }
+
+    // Loads the operators and brings them up to date from the payment ledger, which is returned
+    private PaymentLedger loadOperators(List<Operator> operators) {
+        if (!FileSystem.loadOperatorsFromFile(operators, operatorsFile)) {
+            err.println("Error: could not load " + operatorsFile);
+            return null;
+        }
+        PaymentLedger ledger = PaymentLedger.open(ledgerFile, operators, operatorsFile);
+        if (ledger == null) {
+            err.println("Error: could not load " + ledgerFile);
+        }
+        return ledger;
+    }
+
+    private int printImportResult(BatchImport.Result result, String rejectsFile, CustomerJournal journal) {
+        journal.close();
+        if (result == null) {
+            err.println("Error: import failed, see the log above.");
+            return 1;
+        }
+        out.println(result);
+        if (result.getRejected() > 0) {
+            out.println("Rejected records written to " + rejectsFile);
+        }
+        return result.isComplete() ? 0 : 1;
+    }
+
+    private int report(String[] args) {
+        if (args.length > 1) return usage("report takes at most one REGION");
+        CustomerRegistry customers = loadCustomers();
+        if (customers == null) return 1;
+        PrintWriter w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+        RegionIndex regions = customers.getRegionIndex();
+        if (args.length == 1) {
+            RegionIndex.Bucket bucket = regions.getBucket(args[0]);
+            if (bucket == null) {
+                err.println("No customers found in region " + args[0] + ".");
+                return 1;
+            }
+            w.println("meterCode\tname\tbalanceDue\tconsumption\tcancelled");
+            for (OldCustomer c : customers.customersInRegion(args[0])) {
+                w.print(c.getMeterCode()); w.print('\t');
+                w.print(c.getName()); w.print('\t');
+                w.print(c.getBalanceDue()); w.print('\t');
+                w.print(c.getTotalUsage()); w.print('\t');
+                w.println(c.isStopAndCancel() ? "yes" : "no");
+            }
+            w.println("# " + bucket.getDisplayName() + ": " + bucket.getCustomerCount() + " customers, "
+                    + bucket.getTotalBalanceDue() + " EGP due, " + bucket.getTotalConsumption() + " units");
+        } else {
+            w.println("region\tcustomers\tbalanceDue\tconsumption");
+            for (String region : regions.getRegionNames()) {
+                RegionIndex.Bucket bucket = regions.getBucket(region);
+                w.println(region + "\t" + bucket.getCustomerCount() + "\t" + bucket.getTotalBalanceDue() + "\t" + bucket.getTotalConsumption());
+            }
+        }
+        w.flush();
+        return w.checkError() ? 1 : 0;
+    }
+
+    private int convertSnapshot(String[] args) {
+        if (args.length < 1 || args.length > 2) return usage("convert-snapshot needs binary|text [TARGET]");
+        boolean toBinary;
+        if (args[0].equals("binary")) toBinary = true;
+        else if (args[0].equals("text")) toBinary = false;
+        else return usage("Unknown snapshot format " + args[0]);
+        String target = args.length > 1 ? args[1] : customersFile;
+        long start = System.nanoTime();
+        if (!BinarySnapshot.convert(customersFile, target, toBinary)) {
+            err.println("Error: could not convert " + customersFile);
+            return 1;
+        }
+        out.println("✅ " + customersFile + " written to " + target + " as " + args[0] + " ("
+                + new File(target).length() + " bytes, " + (System.nanoTime() - start) / 1_000_000 + " ms).");
+        return 0;
+    }
+
+    private int generate(String[] args) {
+        if (args.length < 2 || args.length > 4) return usage("generate needs DIR CUSTOMERS [SEED [OPERATORS]]");
+        int count;
+        long seed;
+        int operators;
+        try {
+            count = Integer.parseInt(args[1]);
+            seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+            operators = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        } catch (NumberFormatException e) {
+            return usage("Invalid number: " + e.getMessage());
+        }
+        if (count < 0 || operators < 0) return usage("Counts cannot be negative");
+        File directory = new File(args[0]);
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        long start = System.nanoTime();
+        try {
+            if (!generator.write(directory, count, operators)) {
+                err.println("Error: could not write the data set to " + directory);
+                return 1;
+            }
+        } catch (IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        out.println("✅ " + count + " customers, " + operators + " operators, " + generator.getReadingCount() + " readings and "
+                + generator.getPaymentCount() + " payments written to " + directory + " (seed " + seed + ", "
+                + (System.nanoTime() - start) / 1_000_000 + " ms).");
+        return 0;
+    }
+
+    private CustomerRegistry loadCustomers() {
+        CustomerRegistry customers = new CustomerRegistry();
+        if (!FileSystem.loadCustomersFromFile(customers, customersFile)) {
+            err.println("Error: could not load " + customersFile);
+            return null;
+        }
+        return customers;
+    }
+
+    private int usage(String message) {
+        if (message != null) err.println(message);
+        err.print(USAGE);
+        return 2;
+    }
+}
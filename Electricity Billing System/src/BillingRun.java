@@ -0,0 +1,136 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Month-end billing of every active customer in one pass.
+// Applies the same rule as Operator.defineTariff to each customer that is not stopped/cancelled,
+// priced with one TariffTable (flat, or the regulator's bands, which allocate nothing per customer),
+// splitting the customer list across cores with fork-join. Nothing is written per customer; the
+// caller checkpoints once at the end (see runAndCheckpoint).
+public class BillingRun {
+    // Below this many customers a task bills its slice directly instead of splitting further
+    private static final int SLICE_SIZE = 4096;
+
+    private final List<OldCustomer> customers;
+    private final int pricePerUnit;
+    private final TariffTable tariffs;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public BillingRun(List<OldCustomer> customers, int pricePerUnit) {
+        this.customers = customers;
+        this.pricePerUnit = pricePerUnit;
+        this.tariffs = null;
+    }
+
+    public BillingRun(List<OldCustomer> customers, TariffTable tariffs) {
+        this.customers = customers;
+        this.pricePerUnit = 0;
+        this.tariffs = tariffs;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Bills all active customers and returns the totals. Price must be positive, like in defineTariff.
+    public Summary run() {
+        TariffTable table = tariffs != null ? tariffs : TariffTable.flat(pricePerUnit); // Throws if not positive
+        long start = System.nanoTime();
+        OldCustomer[] snapshot = customers.toArray(new OldCustomer[0]);
+        Summary summary = pool.invoke(new BillSlice(snapshot, 0, snapshot.length, table));
+        summary.tariff = table.toString();
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    // Bills everyone, then writes a single snapshot through the journal's compaction.
+    // The summary reports whether that checkpoint succeeded.
+    public Summary runAndCheckpoint(CustomerJournal journal) {
+        Summary summary = run();
+        summary.checkpointed = journal.compact();
+        return summary;
+    }
+
+    private static class BillSlice extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+        private final OldCustomer[] customers;
+        private final int from, to;
+        private final TariffTable tariffs;
+
+        BillSlice(OldCustomer[] customers, int from, int to, TariffTable tariffs) {
+            this.customers = customers;
+            this.from = from;
+            this.to = to;
+            this.tariffs = tariffs;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from <= SLICE_SIZE) {
+                return billSlice();
+            }
+            int mid = (from + to) >>> 1;
+            BillSlice left = new BillSlice(customers, from, mid, tariffs);
+            left.fork();
+            Summary right = new BillSlice(customers, mid, to, tariffs).compute();
+            return left.join().merge(right);
+        }
+
+        private Summary billSlice() {
+            Summary summary = new Summary();
+            for (int i = from; i < to; i++) {
+                OldCustomer customer = customers[i];
+                if (customer.isStopAndCancel()) {
+                    summary.skippedCancelled++;
+                    continue;
+                }
+                int charge = customer.addMonthlyCharge(tariffs);
+                if (charge < 0) {
+                    summary.invalidReadings++;
+                    continue;
+                }
+                summary.billed++;
+                summary.totalConsumption += customer.getTotalUsage();
+                summary.totalBilled += charge;
+            }
+            return summary;
+        }
+    }
+
+    // Totals of one billing run
+    public static class Summary {
+        private int billed;
+        private int skippedCancelled;
+        private int invalidReadings;
+        private long totalConsumption;
+        private long totalBilled;
+        private String tariff;
+        private long elapsedMillis;
+        private boolean checkpointed;
+
+        public int getBilled() { return billed; }
+        public int getSkippedCancelled() { return skippedCancelled; }
+        public int getInvalidReadings() { return invalidReadings; }
+        public long getTotalConsumption() { return totalConsumption; }
+        public long getTotalBilled() { return totalBilled; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isCheckpointed() { return checkpointed; }
+
+        private Summary merge(Summary other) {
+            billed += other.billed;
+            skippedCancelled += other.skippedCancelled;
+            invalidReadings += other.invalidReadings;
+            totalConsumption += other.totalConsumption;
+            totalBilled += other.totalBilled;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "✅ Billing run at " + tariff + ": billed " + billed + " customers for " + totalConsumption
+                    + " units, total " + totalBilled + " EGP." +
+                   "\nSkipped " + skippedCancelled + " stopped/cancelled and " + invalidReadings + " with invalid readings"
+                    + " (" + elapsedMillis + " ms).";
+        }
+    }
+}
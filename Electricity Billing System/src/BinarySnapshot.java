@@ -0,0 +1,162 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+// Compact binary alternative to the text snapshot written by FileSystem.saveCustomerData.
+// Layout (big-endian, as written by DataOutputStream):
+//   header: int MAGIC, short VERSION, int record count
+//   record: name, NID, address, email, meter code, region as strings (varint of byte length + 1,
+//           0 for null, then UTF-8 bytes), long phone number, int current reading, int last reading,
+//           int balance due, int unpaid months, byte flags (FLAG_COMPLAINT | FLAG_STOP_AND_CANCEL)
+// FileSystem recognises the magic number, so a binary Customers.txt is loaded, journaled and compacted
+// like a text one; convert switches an existing file between the two formats.
+public class BinarySnapshot {
+    public static final int MAGIC = 0x45425331; // "EBS1"
+    public static final short VERSION = 1;
+
+    private static final int FLAG_COMPLAINT = 1;
+    private static final int FLAG_STOP_AND_CANCEL = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Whether the file starts with the binary snapshot magic number (false if it does not exist)
+    public static boolean isBinarySnapshot(String filename) {
+        File file = new File(filename);
+        if (file.length() < 4) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Saves customer data in the binary format. Returns true on success, false on failure.
+    // Like the text format it is written to a temporary file first and moved over the old one.
+    public static boolean save(List<OldCustomer> customers, String filename) {
+        File temp = new File(filename + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(customers.size());
+            for (OldCustomer customer : customers) {
+                writeString(out, customer.getName());
+                writeString(out, customer.getNid());
+                writeString(out, customer.getAddress());
+                writeString(out, customer.getEmail());
+                writeString(out, customer.getMeterCode());
+                writeString(out, customer.getRegion());
+                out.writeLong(customer.getNumber());
+                out.writeInt(customer.getCurrentReading());
+                out.writeInt(customer.getLastReading());
+                out.writeInt(customer.getBalanceDue());
+                out.writeInt(customer.getUnpaidMonths());
+                out.writeByte((customer.isComplain() ? FLAG_COMPLAINT : 0) | (customer.isStopAndCancel() ? FLAG_STOP_AND_CANCEL : 0));
+            }
+            out.flush();
+            file.getFD().sync(); // On the disk before it replaces the old snapshot
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return FileSystem.replaceFile(temp, new File(filename));
+    }
+
+    // Loads a binary snapshot, without replaying its journal. Returns true on success, false on failure.
+    public static boolean load(List<OldCustomer> customers, String filename) {
+        customers.clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                System.err.println(filename + " is not a binary customer snapshot");
+                return false;
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                System.err.println(filename + " has unsupported snapshot version " + version);
+                return false;
+            }
+            int count = in.readInt();
+            byte[] buffer = new byte[256];
+            for (int i = 0; i < count; i++) {
+                String name = readString(in, buffer);
+                String nid = readString(in, buffer);
+                String address = readString(in, buffer);
+                String email = readString(in, buffer);
+                String meterCode = readString(in, buffer);
+                String region = readString(in, buffer);
+                long number = in.readLong();
+                int currentReading = in.readInt();
+                int lastReading = in.readInt();
+                int balanceDue = in.readInt();
+                OldCustomer c = new OldCustomer(name, nid, address, email, meterCode, region, number, currentReading, lastReading, balanceDue);
+                c.setUnpaidMonths(in.readInt());
+                int flags = in.readByte();
+                c.setComplain((flags & FLAG_COMPLAINT) != 0);
+                c.setStopAndCancel((flags & FLAG_STOP_AND_CANCEL) != 0);
+                customers.add(c);
+            }
+            return true;
+        } catch (FileNotFoundException e) {
+            return true; // Same as the text format: no file yet means no customers yet
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Rewrites a customer file (snapshot plus journal) in the binary or the text format.
+    // The journal is folded into the new file, so it is deleted when converting in place.
+    public static boolean convert(String sourceFile, String targetFile, boolean toBinary) {
+        CustomerRegistry customers = new CustomerRegistry();
+        if (!FileSystem.loadCustomersFromFile(customers, sourceFile)) {
+            return false;
+        }
+        boolean saved = toBinary ? save(customers, targetFile) : FileSystem.saveCustomerText(customers, targetFile);
+        if (!saved) {
+            return false;
+        }
+        if (new File(sourceFile).getAbsoluteFile().equals(new File(targetFile).getAbsoluteFile())) {
+            return CustomerJournal.deleteJournal(sourceFile);
+        }
+        return true;
+    }
+
+    // Varint-length-prefixed UTF-8, shared with ReadingHistory
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int n = bytes.length + 1;
+        while (n >= 0x80) {
+            out.writeByte((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.writeByte(n);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in, byte[] buffer) throws IOException {
+        int n = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            n |= (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 28) {
+                throw new IOException("Corrupt string length");
+            }
+        } while ((b & 0x80) != 0);
+        if (n == 0) {
+            return null;
+        }
+        int length = n - 1;
+        byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
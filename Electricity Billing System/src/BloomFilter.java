@@ -0,0 +1,81 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Set of strings that can answer "certainly not in it" without a hash table lookup. Each string sets
+// HASHES bits, all in one 64-bit word of a bit array chosen by its hash (a "blocked" filter: a test
+// reads one word, one cache miss at most), and a string with any of its bits clear was never added.
+// A string whose bits are all set was probably added (false positives under 2% up to the planned size,
+// more past it), so a "maybe" must be confirmed against the real index.
+//
+// CustomerRegistry keeps one of NIDs in front of its NID index: registering a customer, whose NID
+// is nearly always new, then takes one word test instead of a map lookup. Strings cannot be
+// removed, so the registry rebuilds the filter once enough customers have gone or it grows past
+// getCapacity().
+//
+// One thread adds at a time (the registry's structure lock); any thread may test, and sees every
+// string added before it started (the words are set through an AtomicLongArray).
+public class BloomFilter {
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASHES = 6;          // Six 6-bit positions within the word
+
+    private final AtomicLongArray words;
+    private final int wordMask;                   // Number of words - 1, a power of two
+    private final int capacity;
+    private int count;
+
+    public BloomFilter(int capacity) {
+        this.capacity = Math.max(capacity, 64);
+        long bits = Long.highestOneBit((long) this.capacity * BITS_PER_ENTRY - 1) << 1;
+        int wordCount = (int) Math.min(bits >>> 6, 1 << 26);
+        words = new AtomicLongArray(wordCount);
+        wordMask = wordCount - 1;
+    }
+
+    public void add(String s) {
+        long h = hash(s);
+        int index = word(h);
+        long word = words.get(index);
+        long flags = flags(h);
+        if ((word & flags) != flags) {
+            words.set(index, word | flags); // Single writer: no lost update
+        }
+        count++;
+    }
+
+    public boolean mightContain(String s) {
+        long h = hash(s);
+        long flags = flags(h);
+        return (words.get(word(h)) & flags) == flags;
+    }
+
+    // Strings added, and how many the filter was sized for
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // The word from the top bits of the hash, the bits within it from the bottom 36
+    private int word(long h) {
+        return (int) (h >>> 38) & wordMask;
+    }
+
+    private static long flags(long h) {
+        long flags = 0;
+        for (int i = 0; i < HASHES; i++) {
+            flags |= 1L << (h >>> (6 * i));
+        }
+        return flags;
+    }
+
+    // String.hashCode is cached in the string and intrinsic; the finalizer spreads it over 64 bits.
+    // Strings with equal hashCode share their bits, one more false positive in four billion.
+    private static long hash(String s) {
+        long h = s.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 29;
+        return h;
+    }
+}
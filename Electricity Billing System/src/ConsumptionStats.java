@@ -0,0 +1,127 @@
+// Distribution of monthly consumption over a group of customers (one region in RegionIndex), kept
+// up to date as values are added, removed or changed instead of being recomputed by a scan.
+// Values are counted in a fixed histogram: one bin per unit below EXACT_LIMIT, and above it 64 bins
+// per power of two. Min, max and percentiles are therefore exact below EXACT_LIMIT units and at most
+// 1/64 (about 1.6%) low above it (a bin reports its lowest value), and every query costs the same whatever the number of customers.
+// Negative consumption (current reading below last, invalid) is only counted, never binned.
+// Not thread-safe; RegionIndex.Bucket calls it under its own lock.
+public class ConsumptionStats {
+    public static final int EXACT_LIMIT = 1024;
+    private static final int SUB_BINS_SHIFT = 6; // 64 bins per power of two
+    private static final int SUB_BINS = 1 << SUB_BINS_SHIFT;
+    private static final int EXACT_BITS = 10;    // log2(EXACT_LIMIT)
+    private static final int BINS = EXACT_LIMIT + (31 - EXACT_BITS) * SUB_BINS;
+
+    private final int[] counts = new int[BINS];
+    private int count;
+    private long total;
+    private int invalid;
+
+    public void add(int consumption) {
+        if (consumption < 0) {
+            invalid++;
+            return;
+        }
+        counts[bin(consumption)]++;
+        count++;
+        total += consumption;
+    }
+
+    public void remove(int consumption) {
+        if (consumption < 0) {
+            invalid--;
+            return;
+        }
+        counts[bin(consumption)]--;
+        count--;
+        total -= consumption;
+    }
+
+    public ConsumptionStats copy() {
+        ConsumptionStats copy = new ConsumptionStats();
+        System.arraycopy(counts, 0, copy.counts, 0, BINS);
+        copy.count = count;
+        copy.total = total;
+        copy.invalid = invalid;
+        return copy;
+    }
+
+    public void change(int oldConsumption, int newConsumption) {
+        remove(oldConsumption);
+        add(newConsumption);
+    }
+
+    // Customers with a valid (non-negative) consumption
+    public int getCount() {
+        return count;
+    }
+
+    public int getInvalidCount() {
+        return invalid;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public int getMin() {
+        for (int b = 0; b < BINS; b++) {
+            if (counts[b] > 0) return lowerBound(b);
+        }
+        return 0;
+    }
+
+    public int getMax() {
+        for (int b = BINS - 1; b >= 0; b--) {
+            if (counts[b] > 0) return lowerBound(b);
+        }
+        return 0;
+    }
+
+    // The consumption at or below which `percent` percent of the customers are (nearest rank)
+    public int getPercentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * count));
+        long seen = 0;
+        for (int b = 0; b < BINS; b++) {
+            seen += counts[b];
+            if (seen >= rank) return lowerBound(b);
+        }
+        return getMax();
+    }
+
+    private static int bin(int value) {
+        if (value < EXACT_LIMIT) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value); // >= EXACT_BITS
+        int subBin = (value >>> (exponent - SUB_BINS_SHIFT)) & (SUB_BINS - 1);
+        return EXACT_LIMIT + (exponent - EXACT_BITS) * SUB_BINS + subBin;
+    }
+
+    private static int lowerBound(int bin) {
+        if (bin < EXACT_LIMIT) {
+            return bin;
+        }
+        int exponent = EXACT_BITS + (bin - EXACT_LIMIT) / SUB_BINS;
+        int subBin = (bin - EXACT_LIMIT) % SUB_BINS;
+        return (1 << exponent) + (subBin << (exponent - SUB_BINS_SHIFT));
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "No valid readings" + (invalid > 0 ? " (" + invalid + " with invalid readings)." : ".");
+        }
+        return "Min " + getMin() + ", max " + getMax() + ", mean " + String.format("%.1f", getMean())
+                + ", median " + getPercentile(50) + ", 90th percentile " + getPercentile(90)
+                + ", 99th percentile " + getPercentile(99) + " units"
+                + (invalid > 0 ? " (" + invalid + " with invalid readings left out)." : ".");
+    }
+}
@@ -1,6 +1,13 @@
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 public class Customer {
+    // Input formats, compiled once: String.matches compiles its pattern on every call, which adds up
+    // when a bulk import checks every field of thousands of customers
+    public static final Pattern NID_PATTERN = Pattern.compile("\\d{14}");
+    public static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$");
+    public static final Pattern PHONE_PATTERN = Pattern.compile("\\d{11}");
+
     private String name;
     private String Nid;
     private String address;
@@ -87,7 +94,7 @@ public class Customer {
     // Overloaded setNumber for String input from GUI, if GUI handles validation to String
     public void setNumber(String phoneNumberStr) {
         // Assuming GUI validates it's 11 digits and converts to long or this method does
-        if (phoneNumberStr != null && phoneNumberStr.matches("\\d{11}")) {
+        if (phoneNumberStr != null && PHONE_PATTERN.matcher(phoneNumberStr).matches()) {
             this.number = Long.parseLong(phoneNumberStr);
         } else {
             // Handle error or rely on GUI validation
@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+// Bulk onboarding of new customers, e.g. the meters of a new housing project.
+// Each record is "name,nid,email,phone,region,address"; the address comes last and may contain commas.
+// Fields are checked with the same rules as the registration forms (Customer.NID_PATTERN and friends),
+// and every problem of a record is reported at once, so a rejected row can be fixed in one go.
+// NIDs are checked against the registry's NID index (behind its Bloom filter), which also holds the
+// customers added earlier in the same file. Accepted customers get a meter code from the registry's
+// MeterCodeAllocator and are journaled; the whole file is committed once at the end instead of once
+// per customer, as the registration forms do (NewCustomer.createNewCustomer).
+public class CustomerImport extends BatchImport {
+    private static final int FIELDS = 6;
+
+    private final CustomerRegistry customers;
+    private final Set<OldCustomer> added = Collections.newSetFromMap(new IdentityHashMap<>()); // Registered by this import
+
+    public CustomerImport(CustomerRegistry customers, CustomerJournal journal) {
+        super(journal);
+        this.customers = customers;
+        setBatchSize(Integer.MAX_VALUE); // One commit for the whole file
+    }
+
+    @Override
+    protected boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "name,", 0, 5);
+    }
+
+    @Override
+    protected String applyRecord(String line) throws IOException {
+        String[] fields = line.split(",", FIELDS);
+        if (fields.length < FIELDS) {
+            return "Expected name,nid,email,phone,region,address but found " + fields.length + " fields";
+        }
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = fields[i].trim();
+        }
+        String name = fields[0], nid = fields[1], email = fields[2], phone = fields[3], region = fields[4], address = fields[5];
+        StringBuilder problems = new StringBuilder();
+        if (name.isEmpty()) problem(problems, "Name is missing");
+        if (!Customer.NID_PATTERN.matcher(nid).matches()) problem(problems, "NID " + nid + " is not 14 digits");
+        if (!Customer.EMAIL_PATTERN.matcher(email).matches()) problem(problems, "Invalid email " + email);
+        if (!Customer.PHONE_PATTERN.matcher(phone).matches()) problem(problems, "Phone " + phone + " is not 11 digits");
+        if (region.isEmpty()) problem(problems, "Region is missing");
+        if (address.isEmpty()) problem(problems, "Address is missing");
+        if (problems.length() > 0) {
+            return problems.toString();
+        }
+        OldCustomer existing = customers.findByNid(nid);
+        if (existing != null) {
+            return added.contains(existing)
+                    ? "NID " + nid + " appears earlier in this file (" + existing.getMeterCode() + ")"
+                    : "NID " + nid + " is already registered to " + existing.getMeterCode();
+        }
+        String meterCode = customers.allocateMeterCode();
+        if (meterCode == null) {
+            return "No meter codes are left to assign";
+        }
+        OldCustomer customer = new OldCustomer(name, nid, address, email, meterCode, region, Long.parseLong(phone));
+        if (!customers.addIfAbsent(customer)) {
+            return "NID " + nid + " was registered while the file was being imported";
+        }
+        added.add(customer);
+        if (!journal.logUpsert(customer)) {
+            throw new IOException("could not journal the new customer " + meterCode);
+        }
+        return null;
+    }
+
+    private static void problem(StringBuilder problems, String problem) {
+        if (problems.length() > 0) problems.append("; ");
+        problems.append(problem);
+    }
+}
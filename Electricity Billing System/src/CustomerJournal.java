@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Write-ahead journal for the customer store.
+// Instead of rewriting the whole customers file after every click, each mutation appends one
+// tab-separated record holding the customer's state after the change. The snapshot file written by
+// FileSystem.saveCustomerData stays the base; on startup loadCustomersFromFile replays the journal
+// on top of it. Once enough records pile up the journal is compacted into a fresh snapshot.
+// Appending and flushing are synchronized, so the GUI can log on the EDT while a background thread
+// flushes. Compaction is split in two for the same reason: beginCompaction (quick, on the thread that
+// owns the customer list) rotates the journal aside and copies the list, finishCompaction writes the
+// snapshot from that copy anywhere else. Until it finishes, the rotated journal is replayed as well.
+public class CustomerJournal {
+    public static final String JOURNAL_SUFFIX = ".journal";
+    public static final String ROTATED_SUFFIX = ".compacting";
+    public static final int DEFAULT_COMPACT_THRESHOLD = 10000;
+
+    // Record types (first field of every journal line)
+    private static final String READING = "R";          // meter, current, last, unpaid months
+    private static final String BALANCE = "B";          // meter, balance due, unpaid months
+    private static final String COMPLAINT = "C";        // meter, complaint flag
+    private static final String STOP_AND_CANCEL = "S";  // meter, stop and cancel flag
+    private static final String UPSERT = "U";           // every field, used for add and update
+    private static final String DELETE = "D";           // meter
+
+    private final List<OldCustomer> customers;
+    private final String snapshotFile;
+    private final String journalFile;
+    private final String rotatedFile;
+    private int compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private boolean autoCommit = true;
+    private int recordsSinceSnapshot;
+    private BufferedWriter writer;
+    private FileOutputStream file; // Under writer, for forcing it to the disk
+
+    public CustomerJournal(List<OldCustomer> customers, String snapshotFile) {
+        this.customers = customers;
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFileFor(snapshotFile);
+        this.rotatedFile = journalFile + ROTATED_SUFFIX;
+        this.recordsSinceSnapshot = countRecords(rotatedFile) + countRecords(journalFile);
+    }
+
+    // Deletes the journal files of a snapshot whose records have been written into it by other means
+    public static boolean deleteJournal(String snapshotFile) {
+        boolean deleted = true;
+        for (File file : new File[] { new File(journalFileFor(snapshotFile) + ROTATED_SUFFIX), new File(journalFileFor(snapshotFile)) }) {
+            if (file.exists() && !file.delete()) {
+                System.err.println("Could not delete " + file);
+                deleted = false;
+            }
+        }
+        return deleted;
+    }
+
+    public static String journalFileFor(String snapshotFile) {
+        return snapshotFile + JOURNAL_SUFFIX;
+    }
+
+    public String getJournalFile() {
+        return journalFile;
+    }
+
+    public synchronized int getRecordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return recordsSinceSnapshot >= compactThreshold;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    // With auto-commit off, records are only buffered until commit() is called (used by batch jobs)
+    public synchronized void setAutoCommit(boolean autoCommit) {
+        this.autoCommit = autoCommit;
+    }
+
+    public synchronized boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    public boolean logReading(OldCustomer c) {
+        return append(READING, c.getMeterCode(), String.valueOf(c.getCurrentReading()),
+                String.valueOf(c.getLastReading()), String.valueOf(c.getUnpaidMonths()));
+    }
+
+    // Used after payments and tariff definitions, both only touch the balance and unpaid months
+    public boolean logBalance(OldCustomer c) {
+        return append(BALANCE, c.getMeterCode(), String.valueOf(c.getBalanceDue()), String.valueOf(c.getUnpaidMonths()));
+    }
+
+    public boolean logComplaint(OldCustomer c) {
+        return append(COMPLAINT, c.getMeterCode(), String.valueOf(c.isComplain()));
+    }
+
+    public boolean logStopAndCancel(OldCustomer c) {
+        return append(STOP_AND_CANCEL, c.getMeterCode(), String.valueOf(c.isStopAndCancel()));
+    }
+
+    public boolean logUpsert(OldCustomer c) {
+        return append(UPSERT, c.getName(), c.getNid(), c.getAddress(), c.getEmail(), c.getMeterCode(), c.getRegion(),
+                String.valueOf(c.getNumber()), String.valueOf(c.getCurrentReading()), String.valueOf(c.getLastReading()),
+                String.valueOf(c.getBalanceDue()), String.valueOf(c.getUnpaidMonths()),
+                String.valueOf(c.isComplain()), String.valueOf(c.isStopAndCancel()));
+    }
+
+    public boolean logDelete(String meterCode) {
+        return append(DELETE, meterCode);
+    }
+
+    private synchronized boolean append(String... fields) {
+        try {
+            if (writer == null) {
+                if (!FileSystem.truncateToLastLine(new File(journalFile))) {
+                    return false;
+                }
+                file = new FileOutputStream(journalFile, true);
+                writer = new BufferedWriter(new OutputStreamWriter(file));
+            }
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) writer.write('\t');
+                writer.write(escape(fields[i]));
+            }
+            writer.write('\n');
+            recordsSinceSnapshot++;
+            return !autoCommit || commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Makes the buffered records durable, compacting into a new snapshot when the journal grew too long.
+    // Compacts on the calling thread, which must own the customer list (batch jobs, the command line).
+    public boolean commit() {
+        if (!flush()) {
+            return false;
+        }
+        if (needsCompaction()) {
+            return compact();
+        }
+        return true;
+    }
+
+    // Writes out the buffered records and forces them to the disk, without ever compacting; batch jobs
+    // call this once per batch and commit() once at the end, so a long import does not rewrite the
+    // snapshot over and over.
+    public synchronized boolean flush() {
+        try {
+            if (writer != null) {
+                writer.flush();
+                file.getFD().sync();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Writes the in-memory state as a new snapshot and starts an empty journal
+    public boolean compact() {
+        List<OldCustomer> snapshot = beginCompaction();
+        return snapshot != null && finishCompaction(snapshot);
+    }
+
+    // Moves the current journal aside (new records go to a fresh one) and returns a copy of the
+    // customer list to write as the next snapshot. Returns null on I/O failure.
+    public synchronized List<OldCustomer> beginCompaction() {
+        closeWriter();
+        File journal = new File(journalFile);
+        File rotated = new File(rotatedFile);
+        try {
+            if (!FileSystem.truncateToLastLine(journal) || !FileSystem.truncateToLastLine(rotated)) {
+                return null;
+            }
+            if (journal.exists()) {
+                if (rotated.exists()) {
+                    // An earlier compaction never finished; keep its records in front of the new ones
+                    try (OutputStream out = new FileOutputStream(rotated, true)) {
+                        Files.copy(journal.toPath(), out);
+                    }
+                    Files.delete(journal.toPath());
+                } else {
+                    Files.move(journal.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        recordsSinceSnapshot = 0;
+        return new ArrayList<>(customers);
+    }
+
+    // Writes the snapshot taken by beginCompaction, then drops the rotated journal it replaces.
+    // Safe to call from any thread; records logged meanwhile are in the new journal.
+    public boolean finishCompaction(List<OldCustomer> snapshot) {
+        if (!FileSystem.saveCustomerData(snapshot, snapshotFile)) {
+            return false;
+        }
+        File rotated = new File(rotatedFile);
+        if (rotated.exists() && !rotated.delete()) {
+            System.err.println("Could not delete " + rotatedFile);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+            file = null;
+        }
+    }
+
+    // Replays the journal of the given snapshot on top of the customers already loaded from it,
+    // starting with the rotated journal of an unfinished compaction if there is one.
+    // Records hold post-change state, so replaying a record that is already in the snapshot is harmless.
+    // Returns the number of records applied, or -1 on I/O failure.
+    public static int replay(List<OldCustomer> customers, String snapshotFile) {
+        String journalFile = journalFileFor(snapshotFile);
+        Map<String, OldCustomer> byMeter = new HashMap<>();
+        for (OldCustomer c : customers) {
+            byMeter.put(key(c.getMeterCode()), c);
+        }
+        int rotated = replayFile(new File(journalFile + ROTATED_SUFFIX), customers, byMeter);
+        int current = replayFile(new File(journalFile), customers, byMeter);
+        return rotated < 0 || current < 0 ? -1 : rotated + current;
+    }
+
+    private static int replayFile(File file, List<OldCustomer> customers, Map<String, OldCustomer> byMeter) {
+        if (!file.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                try {
+                    if (apply(f, customers, byMeter)) {
+                        applied++;
+                    }
+                } catch (RuntimeException e) {
+                    // A torn last line after a crash or a hand-edited record; skip it and keep going
+                    System.err.println("Skipping malformed journal record: " + line);
+                }
+            }
+            return applied;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    private static boolean apply(String[] f, List<OldCustomer> customers, Map<String, OldCustomer> byMeter) {
+        if (UPSERT.equals(f[0])) {
+            if (f.length != 14) return false;
+            OldCustomer existing = byMeter.get(key(unescape(f[5])));
+            OldCustomer c = existing != null ? existing : new OldCustomer();
+            c.setName(unescape(f[1]));
+            c.setNid(unescape(f[2]));
+            c.setAddress(unescape(f[3]));
+            c.setEmail(unescape(f[4]));
+            c.setMeterCode(unescape(f[5]));
+            c.setRegion(unescape(f[6]));
+            c.setNumber(Long.parseLong(f[7]));
+            c.setCurrentReading(Integer.parseInt(f[8]));
+            c.setLastReading(Integer.parseInt(f[9]));
+            c.setBalanceDue(Integer.parseInt(f[10]));
+            c.setUnpaidMonths(Integer.parseInt(f[11]));
+            c.setComplain(Boolean.parseBoolean(f[12]));
+            c.setStopAndCancel(Boolean.parseBoolean(f[13]));
+            if (existing == null) {
+                customers.add(c);
+                byMeter.put(key(c.getMeterCode()), c);
+            }
+            return true;
+        }
+        if (f.length < 2) return false;
+        String meterKey = key(unescape(f[1]));
+        OldCustomer c = byMeter.get(meterKey);
+        if (DELETE.equals(f[0])) {
+            if (c == null) return false;
+            customers.remove(c);
+            byMeter.remove(meterKey);
+            return true;
+        }
+        if (c == null) return false;
+        if (READING.equals(f[0]) && f.length == 5) {
+            c.setCurrentReading(Integer.parseInt(f[2]));
+            c.setLastReading(Integer.parseInt(f[3]));
+            c.setUnpaidMonths(Integer.parseInt(f[4]));
+        } else if (BALANCE.equals(f[0]) && f.length == 4) {
+            c.setBalanceDue(Integer.parseInt(f[2]));
+            c.setUnpaidMonths(Integer.parseInt(f[3]));
+        } else if (COMPLAINT.equals(f[0]) && f.length == 3) {
+            c.setComplain(Boolean.parseBoolean(f[2]));
+        } else if (STOP_AND_CANCEL.equals(f[0]) && f.length == 3) {
+            c.setStopAndCancel(Boolean.parseBoolean(f[2]));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static int countRecords(String journalFile) {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            while (reader.readLine() != null) {
+                count++;
+            }
+        } catch (FileNotFoundException e) {
+            return 0; // No journal yet
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    private static String key(String meterCode) {
+        return meterCode == null ? "" : meterCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Tabs, newlines and backslashes inside free-text fields would break the one-record-per-line format
+    // Tab-separated field escaping, shared with PaymentLedger
+    static String escape(String value) {
+        if (value == null) return "";
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
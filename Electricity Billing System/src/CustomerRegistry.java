@@ -0,0 +1,397 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+// List of customers that keeps hash indexes by meter code and NID, a RegionIndex and a CustomerSearchIndex,
+// and knows which meter codes are taken (MeterCodeAllocator).
+// It is a drop-in replacement for the plain ArrayList the GUI used to hold: every add, remove and
+// clear made through the List interface (Admin, NewCustomer.createNewCustomer, FileSystem loading,
+// journal replay) keeps the indexes in sync, so lookups no longer walk the whole list.
+// Registered customers report field changes back (see OldCustomer.setRegistry) to keep them current.
+//
+// It is safe to share between cashiers, dialogs and batch jobs:
+// - lookups go straight to concurrent hash maps, without locking; NIDs that are not registered (the
+//   usual case when registering a customer) are answered by a BloomFilter before the map
+// - adding and removing customers takes a short lock on the list structure only
+// - changes to one customer are serialized by a lock striped by meter code (lockFor, OldCustomer.getLock),
+//   so unrelated customers never wait for each other
+// - iteration (reports, saves, streams) walks an immutable snapshot of the list, taken without locking
+//   once and reused until the next add or remove
+public class CustomerRegistry extends AbstractList<OldCustomer> implements RandomAccess {
+    private static final int LOCK_STRIPES = 64;
+
+    private final ArrayList<OldCustomer> customers = new ArrayList<>(); // Guarded by structureLock
+    private final Object structureLock = new Object();
+    private volatile List<OldCustomer> snapshot; // Null after a structural change until asked for again
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<String, OldCustomer> byMeterCode = new ConcurrentHashMap<>();
+    private final Map<String, OldCustomer> byNid = new ConcurrentHashMap<>();
+    // Legacy files may hold duplicate meter codes or NIDs: the customers behind the indexed one, in
+    // the order they were added, promoted when it goes. Guarded by structureLock; usually empty.
+    private final Map<String, List<OldCustomer>> meterCodeDuplicates = new HashMap<>();
+    private final Map<String, List<OldCustomer>> nidDuplicates = new HashMap<>();
+    // NIDs of byNid, plus those of customers removed since it was built; replaced, not changed, when rebuilt
+    private volatile BloomFilter nidFilter = new BloomFilter(1024);
+    private int removedNids; // Guarded by structureLock
+    private final RegionIndex regions = new RegionIndex();
+    private final CustomerSearchIndex search = new CustomerSearchIndex();
+    private final MeterCodeAllocator meterCodes = new MeterCodeAllocator();
+    private volatile ReadingHistory readingHistory; // Told about every new monthly reading, if set
+
+    public CustomerRegistry() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Meter codes are matched case-insensitively and without surrounding spaces. Lookups always ignored
+    // case (equalsIgnoreCase); the duplicate check when adding a customer (Admin.addNewCustomer) used to
+    // compare exactly, so "mtr-1234" could be added next to "MTR-1234" although neither lookup could
+    // tell them apart. It is now refused as a duplicate.
+    public static String normalizeMeterCode(String meterCode) {
+        return meterCode == null ? null : meterCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // NIDs are matched exactly, as before, except that surrounding spaces are ignored: " 2990..." is
+    // the same NID as "2990..." (the forms trim their input; customer files may not have)
+    public static String normalizeNid(String nid) {
+        return nid == null ? null : nid.trim();
+    }
+
+    public OldCustomer findByMeterCode(String meterCode) {
+        String key = normalizeMeterCode(meterCode);
+        return key == null ? null : byMeterCode.get(key);
+    }
+
+    public OldCustomer findByNid(String nid) {
+        String key = normalizeNid(nid);
+        return key == null || !nidFilter.mightContain(key) ? null : byNid.get(key);
+    }
+
+    public ReadingHistory getReadingHistory() {
+        return readingHistory;
+    }
+
+    // Set after loading, so only readings taken from then on are recorded
+    public void setReadingHistory(ReadingHistory readingHistory) {
+        this.readingHistory = readingHistory;
+    }
+
+    public RegionIndex getRegionIndex() {
+        return regions;
+    }
+
+    public Collection<OldCustomer> customersInRegion(String region) {
+        return regions.customersIn(region);
+    }
+
+    public List<String> getRegionNames() {
+        return regions.getRegionNames();
+    }
+
+    // A meter code no customer has, reserved for a new one; null if none are left.
+    // Use it instead of Customer.generateMeterCode, whose NID-suffix codes collide.
+    public String allocateMeterCode() {
+        return meterCodes.allocate();
+    }
+
+    public MeterCodeAllocator getMeterCodeAllocator() {
+        return meterCodes;
+    }
+
+    // Customers with the text in their name, meter code, NID or phone number (see CustomerSearchIndex);
+    // at most `limit` of them, 0 for all
+    public List<OldCustomer> search(String text, int limit) {
+        if (!search.isBuilt()) {
+            synchronized (structureLock) {
+                if (!search.isBuilt()) search.build(customers);
+            }
+        }
+        return search.search(text, limit);
+    }
+
+    // Lock guarding changes to the customer with this meter code (any case, surrounding spaces ignored)
+    public Object lockFor(String meterCode) {
+        String key = normalizeMeterCode(meterCode);
+        int h = key == null ? 0 : key.hashCode();
+        h ^= h >>> 16;
+        return locks[h & (LOCK_STRIPES - 1)];
+    }
+
+    // Adds the customer unless one with the same meter code or NID is already registered.
+    // Check and add happen atomically, unlike a find followed by add.
+    public boolean addIfAbsent(OldCustomer customer) {
+        synchronized (structureLock) {
+            if (findByMeterCode(customer.getMeterCode()) != null || findByNid(customer.getNid()) != null) {
+                return false;
+            }
+            add(customer);
+            return true;
+        }
+    }
+
+    // Immutable copy of the list as of the last add or remove; cheap to ask for repeatedly
+    public List<OldCustomer> snapshot() {
+        List<OldCustomer> current = snapshot;
+        if (current == null) {
+            synchronized (structureLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = Collections.unmodifiableList(Arrays.asList(customers.toArray(new OldCustomer[0])));
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public Iterator<OldCustomer> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public Spliterator<OldCustomer> spliterator() {
+        return snapshot().spliterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public OldCustomer get(int index) {
+        synchronized (structureLock) {
+            return customers.get(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (structureLock) {
+            return customers.size();
+        }
+    }
+
+    @Override
+    public void add(int index, OldCustomer customer) {
+        synchronized (structureLock) {
+            customers.add(index, customer);
+            renumber(index);
+            changed();
+            index(customer);
+        }
+    }
+
+    @Override
+    public OldCustomer set(int index, OldCustomer customer) {
+        synchronized (structureLock) {
+            OldCustomer previous = customers.set(index, customer);
+            customer.setRegistryIndex(index);
+            changed();
+            unindex(previous);
+            index(customer);
+            return previous;
+        }
+    }
+
+    @Override
+    public OldCustomer remove(int index) {
+        synchronized (structureLock) {
+            OldCustomer removed = customers.remove(index);
+            renumber(index);
+            changed();
+            unindex(removed);
+            return removed;
+        }
+    }
+
+    // Removes this very customer object (customers have no equals of their own), found by the
+    // position it keeps instead of a scan
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof OldCustomer)) {
+            return false;
+        }
+        synchronized (structureLock) {
+            int index = ((OldCustomer) o).getRegistryIndex();
+            if (index < 0 || index >= customers.size() || customers.get(index) != o) {
+                return false;
+            }
+            remove(index);
+            return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (structureLock) {
+            for (OldCustomer customer : customers) {
+                customer.setRegistry(null);
+            }
+            customers.clear();
+            byMeterCode.clear();
+            byNid.clear();
+            meterCodeDuplicates.clear();
+            nidDuplicates.clear();
+            regions.clear();
+            search.clear();
+            meterCodes.clear();
+            nidFilter = new BloomFilter(1024);
+            removedNids = 0;
+            changed();
+        }
+    }
+
+    private void changed() {
+        modCount++;
+        snapshot = null;
+    }
+
+    // Positions from this index on moved; the same tail the list itself just shifted
+    private void renumber(int from) {
+        for (int i = from; i < customers.size(); i++) {
+            customers.get(i).setRegistryIndex(i);
+        }
+    }
+
+    // Change notifications from registered customers
+
+    void reindex(OldCustomer customer, String oldMeterCode, String oldNid) {
+        synchronized (structureLock) {
+            removeKey(byMeterCode, meterCodeDuplicates, normalizeMeterCode(oldMeterCode), customer);
+            removeKey(byNid, nidDuplicates, normalizeNid(oldNid), customer);
+            indexKeys(customer);
+            search.update(customer);
+        }
+    }
+
+    void searchTextChanged(OldCustomer customer) {
+        search.update(customer);
+    }
+
+    void regionChanged(OldCustomer customer, String oldRegion) {
+        synchronized (structureLock) {
+            regions.regionChanged(customer, oldRegion);
+        }
+    }
+
+    void balanceChanged(OldCustomer customer, int oldBalance) {
+        regions.balanceChanged(customer, oldBalance);
+    }
+
+    void consumptionChanged(OldCustomer customer, int oldConsumption) {
+        regions.consumptionChanged(customer, oldConsumption);
+    }
+
+    // Called with the customer's lock held, so one meter's readings reach the history in order
+    void readingTaken(OldCustomer customer, int reading) {
+        ReadingHistory history = readingHistory;
+        if (history != null) {
+            history.record(customer.getMeterCode(), System.currentTimeMillis() / 1000, reading);
+        }
+    }
+
+    // index, unindex, putKey and removeKey run with structureLock held
+
+    private void index(OldCustomer customer) {
+        customer.setRegistry(this);
+        regions.add(customer);
+        indexKeys(customer);
+        search.add(customer);
+    }
+
+    private void indexKeys(OldCustomer customer) {
+        String meterKey = normalizeMeterCode(customer.getMeterCode());
+        putKey(byMeterCode, meterCodeDuplicates, meterKey, customer);
+        meterCodes.markUsed(meterKey); // Removing a customer does not free its code, see MeterCodeAllocator
+        String nidKey = normalizeNid(customer.getNid());
+        if (nidKey != null) {
+            // Filter first: findByNid tests it before the map, so a key in the map must already be in it
+            if (nidFilter.getCount() >= nidFilter.getCapacity()) {
+                rebuildNidFilter(nidKey); // Past its size the filter lets more and more lookups through
+            } else {
+                nidFilter.add(nidKey);
+            }
+            putKey(byNid, nidDuplicates, nidKey, customer);
+        }
+    }
+
+    // The first customer added with a key stays the indexed one, the same customer the old linear
+    // scan returned; later ones wait in its duplicate chain
+    private static void putKey(Map<String, OldCustomer> index, Map<String, List<OldCustomer>> duplicates, String key, OldCustomer customer) {
+        if (key == null) return;
+        OldCustomer first = index.putIfAbsent(key, customer);
+        if (first != null && first != customer) {
+            duplicates.computeIfAbsent(key, k -> new ArrayList<>(2)).add(customer);
+        }
+    }
+
+    // Sized for twice the NIDs now registered, so it is rebuilt after the registry doubles, and
+    // without the NIDs of removed customers. A NID about to be indexed is added before publishing.
+    private void rebuildNidFilter(String newNid) {
+        BloomFilter filter = new BloomFilter((byNid.size() + 1) * 2);
+        for (String nid : byNid.keySet()) {
+            filter.add(nid);
+        }
+        if (newNid != null) filter.add(newNid);
+        nidFilter = filter;
+        removedNids = 0;
+    }
+
+    private void unindex(OldCustomer customer) {
+        if (customer == null) return;
+        customer.setRegistry(null);
+        regions.remove(customer);
+        search.remove(customer);
+        removeKey(byMeterCode, meterCodeDuplicates, normalizeMeterCode(customer.getMeterCode()), customer);
+        removeKey(byNid, nidDuplicates, normalizeNid(customer.getNid()), customer);
+    }
+
+    private void removeKey(Map<String, OldCustomer> index, Map<String, List<OldCustomer>> duplicates, String key, OldCustomer customer) {
+        if (key == null) return;
+        List<OldCustomer> chain = duplicates.get(key);
+        if (index.get(key) != customer) {
+            if (chain != null && removeFrom(chain, customer) && chain.isEmpty()) {
+                duplicates.remove(key);
+            }
+            return;
+        }
+        if (chain != null) {
+            index.put(key, chain.remove(0)); // Promote the next customer with the same key
+            if (chain.isEmpty()) duplicates.remove(key);
+            return;
+        }
+        index.remove(key);
+        if (index == byNid && ++removedNids > byNid.size() / 2 + 1024) {
+            rebuildNidFilter(null); // Mostly NIDs that are gone: they would all have to be looked up
+        }
+    }
+
+    // Removes this very customer from a duplicate chain
+    private static boolean removeFrom(List<OldCustomer> chain, OldCustomer customer) {
+        for (int i = 0; i < chain.size(); i++) {
+            if (chain.get(i) == customer) {
+                chain.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
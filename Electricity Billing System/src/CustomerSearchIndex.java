@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+// Search-as-you-type over the customers' name, meter code, NID and phone number: finds every customer
+// with the text anywhere in one of those fields, ignoring case. Maintained by CustomerRegistry.
+//
+// Each field is cut into trigrams (three consecutive characters, case folded), and every trigram
+// keeps the ids of the customers having it, in increasing order, as varint gaps (one or two bytes
+// per customer instead of a four-byte int). A query looks up its rarest trigram and checks only those
+// customers' fields, so a search over a million customers touches a few thousand at most; queries
+// shorter than three characters have no trigram and are answered by a scan that stops at `limit`.
+//
+// The index is built on the first search (a couple of seconds for a million customers, which
+// loading the customers should not pay for if nobody searches) and kept current from then on.
+// A customer whose indexed fields change is added again under a new id; the old id is left dead in
+// the lists and dropped when enough of them pile up (compact). Thread-safe; every method is synchronized.
+public class CustomerSearchIndex {
+    private static final int CODE_BITS = 6;                  // Folded characters are 1-63
+    private static final int TRIGRAMS = 1 << (3 * CODE_BITS);
+
+    private OldCustomer[] byId = new OldCustomer[1024];       // Null for dead ids
+    private int nextId;
+    private int live;
+    private final byte[][] postings = new byte[TRIGRAMS][];
+    private final int[] postingBytes = new int[TRIGRAMS];
+    private final int[] postingCounts = new int[TRIGRAMS];   // Dead ids included
+    private final int[] lastIds = new int[TRIGRAMS];
+    private int[] keys = new int[64];                        // Scratch for one customer's trigrams
+    private boolean built;                                   // Until then adds and removes are ignored
+
+    public synchronized int size() {
+        return live;
+    }
+
+    synchronized boolean isBuilt() {
+        return built;
+    }
+
+    // Indexes all the customers; the caller keeps the list from changing meanwhile
+    synchronized void build(Collection<OldCustomer> customers) {
+        clear();
+        built = true;
+        for (OldCustomer customer : customers) {
+            add(customer);
+        }
+    }
+
+    synchronized void add(OldCustomer customer) {
+        if (!built || customer.getSearchId() >= 0) {
+            return;
+        }
+        int id = nextId++;
+        if (id == byId.length) {
+            byId = Arrays.copyOf(byId, byId.length * 2);
+        }
+        byId[id] = customer;
+        customer.setSearchId(id);
+        live++;
+        post(customer, id);
+    }
+
+    synchronized void remove(OldCustomer customer) {
+        int id = customer.getSearchId();
+        if (id < 0 || byId[id] != customer) {
+            return;
+        }
+        byId[id] = null;
+        customer.setSearchId(-1);
+        live--;
+        if (nextId - live > 4096 && nextId - live > live) {
+            compact();
+        }
+    }
+
+    // Name, phone, meter code or NID changed. Customers no longer indexed are left out.
+    synchronized void update(OldCustomer customer) {
+        if (customer.getSearchId() < 0) {
+            return;
+        }
+        remove(customer);
+        add(customer);
+    }
+
+    synchronized void clear() {
+        for (int id = 0; id < nextId; id++) {
+            if (byId[id] != null) byId[id].setSearchId(-1);
+        }
+        byId = new OldCustomer[1024];
+        nextId = 0;
+        live = 0;
+        built = false;
+        Arrays.fill(postings, null);
+        Arrays.fill(postingBytes, 0);
+        Arrays.fill(postingCounts, 0);
+    }
+
+    // Customers with the text in their name, meter code, NID or phone number, in the order they were
+    // indexed; at most `limit` of them (0 for all)
+    public synchronized List<OldCustomer> search(String text, int limit) {
+        List<OldCustomer> matches = new ArrayList<>();
+        String query = text == null ? "" : text.trim();
+        if (query.isEmpty()) {
+            return matches;
+        }
+        if (limit <= 0) {
+            limit = Integer.MAX_VALUE;
+        }
+        if (query.length() < 3) {
+            for (int id = 0; id < nextId && matches.size() < limit; id++) {
+                if (byId[id] != null && matches(byId[id], query)) matches.add(byId[id]);
+            }
+            return matches;
+        }
+        int rarest = -1;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            int key = trigram(query, i);
+            if (rarest < 0 || postingCounts[key] < postingCounts[rarest]) rarest = key;
+        }
+        byte[] list = postings[rarest];
+        int end = postingBytes[rarest];
+        int pos = 0;
+        int id = 0;
+        while (pos < end && matches.size() < limit) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += gap;
+            OldCustomer customer = byId[id];
+            // The trigram only narrows it down; the fields themselves decide
+            if (customer != null && matches(customer, query)) matches.add(customer);
+        }
+        return matches;
+    }
+
+    // Appends the id to the lists of every distinct trigram of the customer's fields
+    private void post(OldCustomer customer, int id) {
+        int n = 0;
+        String[] fields = { customer.getName(), customer.getMeterCode(), customer.getNid(), phone(customer) };
+        for (String field : fields) {
+            if (field == null) continue;
+            for (int i = 0; i + 3 <= field.length(); i++) {
+                if (n == keys.length) keys = Arrays.copyOf(keys, n * 2);
+                keys[n++] = trigram(field, i);
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && keys[i] == keys[i - 1]) continue;
+            int key = keys[i];
+            int gap = postingCounts[key] == 0 ? id : id - lastIds[key];
+            byte[] list = postings[key];
+            if (list == null) {
+                list = postings[key] = new byte[8];
+            } else if (list.length - postingBytes[key] < 5) {
+                list = postings[key] = Arrays.copyOf(list, list.length + (list.length >> 1) + 5);
+            }
+            int pos = postingBytes[key];
+            while ((gap & ~0x7F) != 0) {
+                list[pos++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            list[pos++] = (byte) gap;
+            postingBytes[key] = pos;
+            postingCounts[key]++;
+            lastIds[key] = id;
+        }
+    }
+
+    // Renumbers the live customers 0..live-1 and rebuilds every list without the dead ids
+    private void compact() {
+        OldCustomer[] customers = new OldCustomer[live];
+        int n = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (byId[id] != null) customers[n++] = byId[id];
+        }
+        build(Arrays.asList(customers));
+    }
+
+    private static boolean matches(OldCustomer customer, String query) {
+        return containsIgnoreCase(customer.getName(), query) || containsIgnoreCase(customer.getMeterCode(), query)
+                || containsIgnoreCase(customer.getNid(), query) || containsIgnoreCase(phone(customer), query);
+    }
+
+    private static boolean containsIgnoreCase(String s, String needle) {
+        if (s == null) return false;
+        for (int i = 0; i + needle.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    // Phone numbers are kept as a long, which drops the leading zero of the 11 digits typed in
+    static String phone(OldCustomer customer) {
+        long number = customer.getNumber();
+        if (number <= 0) return null;
+        String digits = Long.toString(number);
+        return digits.length() == 10 ? "0" + digits : digits;
+    }
+
+    private static int trigram(String s, int i) {
+        return (fold(s.charAt(i)) << (2 * CODE_BITS)) | (fold(s.charAt(i + 1)) << CODE_BITS) | fold(s.charAt(i + 2));
+    }
+
+    // Letters 1-26 whatever their case, digits 27-36, anything else hashed into 37-63.
+    // Different characters may share a code; that only costs a few extra candidates to check.
+    private static int fold(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 1;
+        if (c >= '0' && c <= '9') return c - '0' + 27;
+        // Both case conversions, like regionMatches(true, ...) compares (e.g. dotless i and I)
+        c = Character.toLowerCase(Character.toUpperCase(c));
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        return 37 + c % 27;
+    }
+}
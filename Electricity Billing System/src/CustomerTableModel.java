@@ -0,0 +1,205 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.swing.table.AbstractTableModel;
+
+// Table model over the customer registry for the admin's customer list.
+// Nothing is formatted up front: the model holds the registry's snapshot plus an int array of the
+// rows to show, in display order, and JTable asks for the cells of visible rows only.
+// Filtering and sorting rearrange that index array: the region filter takes the region's customers
+// from the RegionIndex, the search text is looked up in the registry's CustomerSearchIndex, numeric
+// columns sort as packed primitive keys, text columns compare the customers' own strings.
+// Call refresh after customers are added, changed or removed.
+public class CustomerTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    public static final int NAME = 0, NID = 1, METER_CODE = 2, REGION = 3, BALANCE = 4, UNPAID_MONTHS = 5, CANCELLED = 6;
+    private static final String[] COLUMNS = { "Name", "NID", "Meter Code", "Region", "Balance (EGP)", "Unpaid Months", "Cancelled" };
+    private static final Class<?>[] TYPES = { String.class, String.class, String.class, String.class, Integer.class, Integer.class, Boolean.class };
+
+    private final List<OldCustomer> customers;
+    private List<OldCustomer> snapshot;
+    private List<OldCustomer> shown;     // The snapshot, or the search results while searching
+    private int[] rows = new int[0];     // Indexes into shown, in display order
+    private String regionFilter;         // null for every region
+    private String textFilter = "";      // Lower case; matched against name, NID, meter code and phone
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    public CustomerTableModel(List<OldCustomer> customers) {
+        this.customers = customers;
+        refresh();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return TYPES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        OldCustomer c = getCustomerAt(row);
+        switch (column) {
+            case NAME: return c.getName();
+            case NID: return c.getNid();
+            case METER_CODE: return c.getMeterCode();
+            case REGION: return c.getRegion();
+            case BALANCE: return c.getBalanceDue();
+            case UNPAID_MONTHS: return c.getUnpaidMonths();
+            default: return c.isStopAndCancel();
+        }
+    }
+
+    public OldCustomer getCustomerAt(int row) {
+        return shown.get(rows[row]);
+    }
+
+    public int getTotalCount() {
+        return snapshot.size();
+    }
+
+    // Shows only one region (null for all) and customers whose name, NID, meter code or phone number
+    // contain the text
+    public void setFilter(String region, String text) {
+        regionFilter = region == null || region.trim().isEmpty() ? null : region;
+        textFilter = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        rebuild();
+    }
+
+    // Sorts by a column; asking for the same column again reverses the order
+    public void sortBy(int column) {
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        rebuild();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    // Takes a new snapshot of the registry (cheap: CustomerRegistry caches it until the list changes)
+    public void refresh() {
+        snapshot = customers instanceof CustomerRegistry ? ((CustomerRegistry) customers).snapshot() : new ArrayList<>(customers);
+        rebuild();
+    }
+
+    private void rebuild() {
+        rows = filter();
+        sort();
+        fireTableDataChanged();
+    }
+
+    private int[] filter() {
+        if (!textFilter.isEmpty() && customers instanceof CustomerRegistry) {
+            // The index answers from a few candidates instead of a scan; a customer added since the
+            // last refresh may show up already, it is in the registry
+            shown = ((CustomerRegistry) customers).search(textFilter, 0);
+            String region = regionFilter == null ? null : RegionIndex.normalizeRegion(regionFilter);
+            int[] result = new int[shown.size()];
+            int n = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (region == null || region.equals(RegionIndex.normalizeRegion(shown.get(i).getRegion()))) result[n++] = i;
+            }
+            return Arrays.copyOf(result, n);
+        }
+        shown = snapshot;
+        int[] result;
+        if (regionFilter != null) {
+            // The region's customers come from the index; map them back to snapshot positions
+            Collection<OldCustomer> inRegion = RegionIndex.customersIn(customers, regionFilter);
+            Set<OldCustomer> members = Collections.newSetFromMap(new IdentityHashMap<>(inRegion.size() * 2));
+            members.addAll(inRegion);
+            result = new int[inRegion.size()];
+            int n = 0;
+            for (int i = 0; i < snapshot.size() && n < result.length; i++) {
+                if (members.contains(snapshot.get(i))) result[n++] = i;
+            }
+            result = n == result.length ? result : Arrays.copyOf(result, n);
+        } else {
+            result = new int[snapshot.size()];
+            for (int i = 0; i < result.length; i++) result[i] = i;
+        }
+        if (textFilter.isEmpty()) {
+            return result;
+        }
+        int n = 0;
+        for (int i : result) {
+            if (matches(snapshot.get(i))) result[n++] = i;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private boolean matches(OldCustomer c) {
+        return containsIgnoreCase(c.getMeterCode(), textFilter) || containsIgnoreCase(c.getNid(), textFilter)
+                || containsIgnoreCase(c.getName(), textFilter) || containsIgnoreCase(CustomerSearchIndex.phone(c), textFilter);
+    }
+
+    // textFilter is already lower case; regionMatches avoids lower-casing every customer's fields
+    private static boolean containsIgnoreCase(String s, String lowerNeedle) {
+        if (s == null) return false;
+        for (int i = 0; i + lowerNeedle.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, lowerNeedle, 0, lowerNeedle.length())) return true;
+        }
+        return false;
+    }
+
+    private void sort() {
+        if (sortColumn < 0) {
+            return;
+        }
+        if (sortColumn == BALANCE || sortColumn == UNPAID_MONTHS || sortColumn == CANCELLED) {
+            // (value, row) packed into one long: a primitive sort with no comparator calls
+            long[] keys = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                OldCustomer c = shown.get(rows[i]);
+                long value = sortColumn == BALANCE ? c.getBalanceDue() : sortColumn == UNPAID_MONTHS ? c.getUnpaidMonths() : (c.isStopAndCancel() ? 1 : 0);
+                keys[i] = ((value - Integer.MIN_VALUE) << 32) | rows[i]; // Offset so negative values sort first
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < rows.length; i++) {
+                rows[ascending ? i : rows.length - 1 - i] = (int) keys[i];
+            }
+            return;
+        }
+        Comparator<Integer> byText = Comparator.comparing(i -> text(shown.get(i)), String.CASE_INSENSITIVE_ORDER);
+        Integer[] boxed = new Integer[rows.length];
+        for (int i = 0; i < rows.length; i++) boxed[i] = rows[i];
+        Arrays.sort(boxed, ascending ? byText : byText.reversed());
+        for (int i = 0; i < rows.length; i++) rows[i] = boxed[i];
+    }
+
+    private String text(OldCustomer c) {
+        String s;
+        switch (sortColumn) {
+            case NAME: s = c.getName(); break;
+            case NID: s = c.getNid(); break;
+            case METER_CODE: s = c.getMeterCode(); break;
+            default: s = c.getRegion(); break;
+        }
+        return s == null ? "" : s;
+    }
+}
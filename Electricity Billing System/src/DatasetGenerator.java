@@ -0,0 +1,210 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Writes a synthetic data set for load testing: a customers file and an operators file the GUI and
+// BatchRunner load as they are, plus a readings file and a payments file for the batch imports.
+//
+// The data looks like the real thing:
+// - valid 14-digit NIDs: century, birth date, the governorate code of the customer's region, a serial
+//   whose last digit gives the gender (odd for men), and a Luhn check digit. The NIDs are unique.
+// - unique meter codes, in MeterCodeAllocator's format
+// - regions as large as the governorates' populations, from Cairo down to South Sinai
+// - mostly small monthly consumption with a long tail of heavy users, some unpaid balances,
+//   a few complaints and cancelled meters
+//
+// Output is deterministic: customer i is drawn from its own random stream derived from the seed, so
+// the same seed always gives the same files (and customer(i) the same customer without writing any).
+// Customers are streamed to disk one at a time, so millions of them take no more memory than ten.
+public class DatasetGenerator {
+    public static final String CUSTOMERS_FILE = "Customers.txt";
+    public static final String OPERATORS_FILE = "Operators.txt";
+    public static final String READINGS_FILE = "Readings.csv";
+    public static final String PAYMENTS_FILE = "Payments.csv";
+
+    // Governorates with their NID codes and populations in hundreds of thousands, largest first
+    private static final String[] REGIONS = {
+        "Cairo", "Giza", "Sharqia", "Dakahlia", "Beheira", "Qalyubia", "Minya", "Alexandria", "Sohag",
+        "Gharbia", "Asyut", "Monufia", "Faiyum", "Kafr El Sheikh", "Qena", "Beni Suef", "Aswan", "Damietta",
+        "Ismailia", "Luxor", "Port Said", "Suez", "Matrouh", "North Sinai", "Red Sea", "New Valley", "South Sinai"
+    };
+    private static final int[] GOVERNORATE_CODES = {
+        1, 21, 13, 12, 18, 14, 24, 2, 26, 16, 25, 17, 23, 15, 27, 22, 28, 11, 19, 29, 3, 4, 33, 34, 31, 32, 35
+    };
+    private static final int[] POPULATIONS = {
+        101, 92, 77, 69, 67, 60, 60, 55, 55, 53, 49, 46, 39, 36, 35, 34, 16, 16, 14, 13, 8, 8, 5, 5, 4, 3, 1
+    };
+    private static final String[] MALE_NAMES = {
+        "Ahmed", "Mohamed", "Mahmoud", "Mostafa", "Omar", "Ali", "Hassan", "Hussein", "Youssef", "Ibrahim",
+        "Khaled", "Tarek", "Amr", "Karim", "Sherif", "Walid", "Hany", "Ashraf", "Sameh", "Islam"
+    };
+    private static final String[] FEMALE_NAMES = {
+        "Fatma", "Mariam", "Aya", "Nour", "Salma", "Heba", "Mona", "Yasmin", "Sara", "Rania",
+        "Dina", "Amira", "Eman", "Hoda", "Nada", "Reem", "Shaimaa", "Asmaa", "Doaa", "Habiba"
+    };
+    private static final String[] FAMILY_NAMES = {
+        "Abdelrahman", "Mansour", "Hegazy", "Saleh", "Farouk", "Soliman", "El Sayed", "Shaker", "Fathy", "Ramadan",
+        "Kamel", "Naguib", "Zaki", "Gaber", "Helmy", "Shehata", "Badawi", "Ezzat", "Lotfy", "Morsy"
+    };
+    private static final String[] STREETS = {
+        "Nile St.", "Tahrir St.", "El Gomhoria St.", "Port Said St.", "El Horreya St.", "Salah Salem St.",
+        "El Nasr Rd.", "26 July St.", "El Mahatta St.", "El Bahr St."
+    };
+    private static final String[] PHONE_PREFIXES = { "010", "011", "012", "015" };
+
+    private static final long FIRST_BIRTH_DAY = LocalDate.of(1945, 1, 1).toEpochDay();
+    private static final long BIRTH_DAYS = LocalDate.of(2005, 12, 31).toEpochDay() - FIRST_BIRTH_DAY + 1;
+    private static final long NID_SPACE = BIRTH_DAYS * 10000; // Birth date and serial: unique per customer
+    private static final long NID_MULTIPLIER = 2147483647L;   // Prime larger than NID_SPACE, so coprime to it
+
+    private final long seed;
+    private final long nidOffset;
+    private final int[] cumulativePopulation = new int[POPULATIONS.length];
+    private long readings;
+    private long payments;
+
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+        this.nidOffset = Math.floorMod(seed, NID_SPACE);
+        int sum = 0;
+        for (int r = 0; r < POPULATIONS.length; r++) {
+            sum += POPULATIONS[r];
+            cumulativePopulation[r] = sum;
+        }
+    }
+
+    public static String[] getRegions() {
+        return REGIONS.clone();
+    }
+
+    // Writes the customers, operators, readings and payments files into the directory.
+    // Returns false (after printing why) if a file cannot be written.
+    public boolean write(File directory, int customers, int operators) {
+        if (customers < 0 || customers > NID_SPACE) {
+            throw new IllegalArgumentException("Between 0 and " + NID_SPACE + " customers can be generated");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Could not create " + directory);
+            return false;
+        }
+        readings = 0;
+        payments = 0;
+        try (BufferedWriter customersOut = new BufferedWriter(new FileWriter(new File(directory, CUSTOMERS_FILE)), 1 << 16);
+             BufferedWriter readingsOut = new BufferedWriter(new FileWriter(new File(directory, READINGS_FILE)), 1 << 16);
+             BufferedWriter paymentsOut = new BufferedWriter(new FileWriter(new File(directory, PAYMENTS_FILE)), 1 << 16)) {
+            readingsOut.write("meterCode,reading\n");
+            paymentsOut.write("meterCode,amount\n");
+            for (int i = 0; i < customers; i++) {
+                SplittableRandom random = randomFor(i);
+                OldCustomer customer = customer(i, random);
+                FileSystem.writeCustomerText(customersOut, customer);
+                // Next month's reading for active meters, and a payment of the exact balance for most
+                // customers who owe one (imports of payments expect the balance as in the file)
+                if (!customer.isStopAndCancel()) {
+                    readingsOut.write(customer.getMeterCode() + "," + (customer.getCurrentReading() + 1 + consumption(random)) + "\n");
+                    readings++;
+                }
+                if (customer.getBalanceDue() > 0 && random.nextInt(100) < 60) {
+                    paymentsOut.write(customer.getMeterCode() + "," + customer.getBalanceDue() + "\n");
+                    payments++;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        List<Operator> operatorList = new ArrayList<>();
+        for (int k = 1; k <= operators; k++) {
+            operatorList.add(new Operator("Operator " + k));
+        }
+        return FileSystem.saveOperatorData(operatorList, new File(directory, OPERATORS_FILE).getPath());
+    }
+
+    // Rows written to the readings and payments files by the last write
+    public long getReadingCount() {
+        return readings;
+    }
+
+    public long getPaymentCount() {
+        return payments;
+    }
+
+    // The i-th customer of this seed's data set
+    public OldCustomer customer(int i) {
+        return customer(i, randomFor(i));
+    }
+
+    private SplittableRandom randomFor(int i) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+    }
+
+    private OldCustomer customer(int i, SplittableRandom random) {
+        int region = region(random.nextInt(cumulativePopulation[cumulativePopulation.length - 1]));
+        String nid = nid(i, GOVERNORATE_CODES[region]);
+        boolean male = (nid.charAt(12) - '0') % 2 == 1;
+        String[] firstNames = male ? MALE_NAMES : FEMALE_NAMES;
+        String firstName = firstNames[random.nextInt(firstNames.length)];
+        String fatherName = MALE_NAMES[random.nextInt(MALE_NAMES.length)];
+        String familyName = FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)];
+        String address = (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)] + ", " + REGIONS[region];
+        String email = firstName.toLowerCase() + "." + familyName.toLowerCase().replace(' ', '_') + i + "@example.com";
+        long phone = Long.parseLong(PHONE_PREFIXES[random.nextInt(PHONE_PREFIXES.length)] + digits(random.nextInt(100000000), 8));
+        int lastReading = random.nextInt(80000);
+        int consumption = consumption(random);
+        int unpaidMonths = random.nextInt(100) < 35 ? 1 + Math.min(3, (int) (-Math.log(1 - random.nextDouble()) * 0.7)) : 0;
+        OldCustomer customer = new OldCustomer(firstName + " " + fatherName + " " + familyName, nid, address, email,
+                MeterCodeAllocator.format(i), REGIONS[region], phone, lastReading + consumption, lastReading,
+                unpaidMonths * Math.max(1, consumption));
+        customer.setUnpaidMonths(unpaidMonths);
+        customer.setComplain(random.nextInt(100) < 2);
+        customer.setStopAndCancel(random.nextInt(100) < 1);
+        return customer;
+    }
+
+    // A month's units: mostly around 200, a long tail, and a few businesses using far more
+    private static int consumption(SplittableRandom random) {
+        double units = -Math.log(1 - random.nextDouble()) * 220;
+        if (random.nextInt(100) < 2) units *= 20;
+        return (int) Math.min(units, 100000);
+    }
+
+    private int region(int person) {
+        int r = 0;
+        while (cumulativePopulation[r] <= person) r++;
+        return r;
+    }
+
+    // Birth date and serial come from a permutation of i (multiply and add modulo NID_SPACE), so NIDs
+    // are unique without remembering the ones handed out, yet look random
+    private String nid(int i, int governorate) {
+        long p = (i * NID_MULTIPLIER + nidOffset) % NID_SPACE;
+        LocalDate birth = LocalDate.ofEpochDay(FIRST_BIRTH_DAY + p % BIRTH_DAYS);
+        int serial = (int) (p / BIRTH_DAYS);
+        String first13 = (birth.getYear() < 2000 ? "2" : "3") + digits(birth.getYear() % 100, 2)
+                + digits(birth.getMonthValue(), 2) + digits(birth.getDayOfMonth(), 2) + digits(governorate, 2) + digits(serial, 4);
+        return first13 + luhn(first13);
+    }
+
+    private static int luhn(String digits) {
+        int sum = 0;
+        for (int k = 0; k < digits.length(); k++) {
+            int d = digits.charAt(digits.length() - 1 - k) - '0';
+            if (k % 2 == 0) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    // Zero-padded; String.format would take most of the time of generating millions of customers
+    private static String digits(int value, int width) {
+        String s = Integer.toString(value);
+        StringBuilder padded = new StringBuilder(width);
+        for (int k = s.length(); k < width; k++) padded.append('0');
+        return padded.append(s).toString();
+    }
+}
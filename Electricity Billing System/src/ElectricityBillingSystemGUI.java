@@ -7,15 +7,30 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class ElectricityBillingSystemGUI extends JFrame {
-    private static List<OldCustomer> customers = new ArrayList<>();
-    private static List<Operator> operators = new ArrayList<>();
-    private static List<Admin> admins = new ArrayList<>();
+    private static List<OldCustomer> customers = new CustomerRegistry(); // Indexed by meter code and NID, safe to share between threads
+    private static List<Operator> operators = new OperatorRegistry(); // Keeps the all-operators collected total up to date
+    private static List<Admin> admins = new CopyOnWriteArrayList<>();
 
     private static final String CUSTOMERS_FILE = "Customers.txt";
     private static final String OPERATORS_FILE = "Operators.txt";
+    private static final String PAYMENTS_LEDGER_FILE = PaymentLedger.DEFAULT_FILE;
+    private static CustomerJournal journal; // Appends one record per customer change instead of rewriting CUSTOMERS_FILE
+    private static final String TARIFFS_FILE = TariffTable.DEFAULT_FILE;
+    private static volatile TariffTable tariffs; // The regulator's bands, if TARIFFS_FILE exists; otherwise operators bill flat
+    private static final String READING_HISTORY_FILE = ReadingHistory.DEFAULT_FILE;
+    private static volatile ReadingHistory readingHistory; // Every reading taken, kept beside the customers (null if it could not be read)
+    private static volatile PaymentLedger ledger; // Every payment; OPERATORS_FILE is only a checkpoint of it (null if it could not be read)
+    private static final PersistenceService persistence = new PersistenceService(); // All file writes happen here, off the EDT
+    private static final long EXIT_SAVE_TIMEOUT_MILLIS = 30000;
+    private boolean exiting; // Set on the EDT by the first exitSystem; the Exit button and closing the window both call it
+    // Payments are saved write-behind: a few seconds or a batch of changes at a time instead of one rewrite each
+    private static final WriteBehindSaver customersSaver = new WriteBehindSaver(ElectricityBillingSystemGUI::commitCustomers, ElectricityBillingSystemGUI::warnUnsaved);
+    private static final WriteBehindSaver paymentsSaver = new WriteBehindSaver(ElectricityBillingSystemGUI::commitPayments, ElectricityBillingSystemGUI::warnUnsaved);
 
     // Define a color scheme
     private static final Color PRIMARY_COLOR = new Color(60, 70, 100); // Dark blue-gray
@@ -33,13 +48,11 @@ public class ElectricityBillingSystemGUI extends JFrame {
     public ElectricityBillingSystemGUI() {
         setTitle("⚡ Electricity Billing System ⚡");
         setSize(700, 550); // Increased main window size
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // exitSystem waits for pending saves first
         setLocationRelativeTo(null);
         getContentPane().setBackground(SECONDARY_COLOR);
         setLayout(new BorderLayout(15, 15)); // Increased gaps
 
-        FileSystem.loadCustomersFromFile(customers, CUSTOMERS_FILE);
-        FileSystem.loadOperatorsFromFile(operators, OPERATORS_FILE);
         if (admins.isEmpty()) {
             admins.add(new Admin("admin1")); // Default admin
         }
@@ -74,11 +87,183 @@ public class ElectricityBillingSystemGUI extends JFrame {
 
         add(mainPanel, BorderLayout.CENTER);
 
+        JLabel statusLabel = new JLabel("Loading customer and operator data...", SwingConstants.CENTER);
+        statusLabel.setFont(GLOBAL_FONT_LABEL);
+        statusLabel.setForeground(TEXT_COLOR_LIGHT);
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+        statusPanel.setBorder(BorderFactory.createEmptyBorder(0, 50, 15, 50));
+        statusPanel.setBackground(SECONDARY_COLOR);
+        statusPanel.add(statusLabel, BorderLayout.NORTH);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        add(statusPanel, BorderLayout.SOUTH);
+
         btnNewCustomer.addActionListener(e -> openNewCustomerDialog());
         btnOldCustomer.addActionListener(e -> openOldCustomerDialog());
         btnOperator.addActionListener(e -> openOperatorDialog());
         btnAdmin.addActionListener(e -> openAdminDialog());
-        btnExit.addActionListener(e -> System.exit(0));
+        btnExit.addActionListener(e -> exitSystem());
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                exitSystem();
+            }
+        });
+
+        loadData(statusPanel, statusLabel, btnNewCustomer, btnOldCustomer, btnOperator, btnAdmin);
+    }
+
+    // Loads both data files on a background thread; the module buttons stay disabled until it is done
+    private void loadData(JPanel statusPanel, JLabel statusLabel, JButton... moduleButtons) {
+        for (JButton button : moduleButtons) button.setEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                // The lists are only touched by this thread until done() runs
+                boolean customersLoaded = FileSystem.loadCustomersFromFile(customers, CUSTOMERS_FILE);
+                boolean tariffsLoaded = !new File(TARIFFS_FILE).exists() || (tariffs = TariffTable.load(TARIFFS_FILE)) != null;
+                readingHistory = ReadingHistory.open(READING_HISTORY_FILE);
+                ((CustomerRegistry) customers).setReadingHistory(readingHistory);
+                boolean operatorsLoaded = FileSystem.loadOperatorsFromFile(operators, OPERATORS_FILE);
+                // Credits payments recorded after the last operators checkpoint
+                ledger = operatorsLoaded ? PaymentLedger.open(PAYMENTS_LEDGER_FILE, operators, OPERATORS_FILE) : null;
+                return customersLoaded && tariffsLoaded && readingHistory != null && operatorsLoaded && ledger != null;
+            }
+
+            @Override
+            protected void done() {
+                boolean loaded;
+                try {
+                    loaded = get();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    loaded = false;
+                }
+                // Saving after a partial load would overwrite the data that could not be read, so
+                // nothing is journaled or saved unless the user says so
+                if (!loaded) {
+                    int confirm = JOptionPane.showConfirmDialog(ElectricityBillingSystemGUI.this,
+                            "Some data could not be loaded, see the log.\nContinue with what was read? Changes you make will be saved over the data files.",
+                            "Data Not Loaded", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                    if (confirm != JOptionPane.YES_OPTION) {
+                        if (ledger != null) {
+                            ledger.close();
+                            ledger = null; // No checkpoint on exit either
+                        }
+                        statusPanel.remove(1);
+                        statusLabel.setText("⚠️ Some data could not be loaded, see the log. Nothing can be changed; fix the files and restart.");
+                        statusPanel.revalidate();
+                        return;
+                    }
+                }
+                journal = new CustomerJournal(customers, CUSTOMERS_FILE);
+                journal.setAutoCommit(false); // flushed by the persistence thread, see commitCustomers
+                for (JButton button : moduleButtons) button.setEnabled(true);
+                if (loaded) {
+                    remove(statusPanel);
+                    revalidate();
+                    repaint();
+                } else {
+                    statusPanel.remove(1);
+                    statusLabel.setText("⚠️ Some data could not be loaded, see the log. Starting with what was read.");
+                    statusPanel.revalidate();
+                }
+            }
+        }.execute();
+    }
+
+    // Saves whatever the write-behind savers still hold and waits for queued saves to reach the disk before leaving
+    private void exitSystem() {
+        if (exiting) return; // Already shutting down; the persistence service accepts no more work
+        exiting = true;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        if (journal != null) {
+            customersSaver.flush();
+        }
+        paymentsSaver.flush();
+        if (ledger != null) {
+            saveOperators(operators, OPERATORS_FILE, null); // Checkpoint, so the next start has nothing to replay
+        }
+        new Thread(() -> {
+            if (journal != null) {
+                persistence.submit(journal::flush, null);
+            }
+            boolean drained = persistence.shutdown(EXIT_SAVE_TIMEOUT_MILLIS);
+            if (journal != null) {
+                journal.close();
+            }
+            if (readingHistory != null) {
+                if (readingHistory.needsCompaction()) readingHistory.compact();
+                readingHistory.close();
+            }
+            if (ledger != null) {
+                ledger.close();
+            }
+            if (!drained) {
+                System.err.println("Exiting before all pending saves finished.");
+            }
+            System.exit(0);
+        }, "exit").start();
+    }
+
+    // Makes the journaled customer changes durable in the background and then calls onDone on the EDT.
+    // Queued flushes coalesce into one; when the journal is due for compaction the list is copied here
+    // on the EDT and the snapshot is written from the copy.
+    private static void commitCustomers(Consumer<Boolean> onDone) {
+        if (journal.needsCompaction()) {
+            List<OldCustomer> snapshot = journal.beginCompaction();
+            if (snapshot == null) {
+                onDone.accept(false);
+                return;
+            }
+            persistence.submit(() -> journal.finishCompaction(snapshot) && flushReadingHistory(), onDone);
+        } else {
+            persistence.submit("customers", () -> journal.flush() && flushReadingHistory(), onDone);
+        }
+    }
+
+    // Readings reach the history as they are taken; they are made durable together with the journal
+    private static boolean flushReadingHistory() {
+        ReadingHistory history = readingHistory;
+        return history == null || history.flush();
+    }
+
+    // Rewrites the operators file in the background from a copy taken now; saves queued close together coalesce.
+    // With the ledger the copy is a checkpoint of it, recording how many ledger entries the totals include.
+    private static void saveOperators(List<Operator> operatorsList, String filename, Consumer<Boolean> onDone) {
+        PaymentLedger currentLedger = ledger;
+        if (currentLedger == null) {
+            List<Operator> snapshot = new ArrayList<>(operatorsList);
+            persistence.submit("operators:" + filename, () -> FileSystem.saveOperatorData(snapshot, filename), onDone);
+            return;
+        }
+        PaymentLedger.Checkpoint checkpoint = currentLedger.checkpoint(operatorsList);
+        persistence.submit("operators:" + filename, () -> currentLedger.saveCheckpoint(checkpoint, filename), onDone);
+    }
+
+    // Makes recorded payments durable: appended ledger lines are flushed, and the operators file is
+    // checkpointed only once enough payments have piled up since the last checkpoint
+    private static void commitPayments(Consumer<Boolean> onDone) {
+        PaymentLedger currentLedger = ledger;
+        if (currentLedger == null || currentLedger.needsCheckpoint()) {
+            saveOperators(operators, OPERATORS_FILE, onDone);
+        } else {
+            persistence.submit("ledger", currentLedger::flush, onDone);
+        }
+    }
+
+    private static void warnUnsaved(int changes) {
+        JOptionPane.showMessageDialog(null, changes + " recent change(s) could not be saved to disk and will be retried.\nSee the log for details.", "Save Warning", JOptionPane.WARNING_MESSAGE);
+    }
+
+    // Shows the outcome of an action once its changes are on disk, warning if they could not be saved
+    private static void reportSaved(Component parent, boolean saved, String message, String title) {
+        if (saved) {
+            JOptionPane.showMessageDialog(parent, message, title, JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(parent, message + "\n\n⚠️ The change could not be saved to disk, see the log.", title, JOptionPane.WARNING_MESSAGE);
+        }
     }
 
     private void styleMainButton(JButton button) {
@@ -182,6 +367,14 @@ public class ElectricityBillingSystemGUI extends JFrame {
         }
     }
 
+    // Distinct sorted regions for the region combo boxes, taken from the region index when available
+    private static String[] regionChoices(List<OldCustomer> customersList) {
+        if (customersList instanceof CustomerRegistry) {
+            return ((CustomerRegistry) customersList).getRegionNames().toArray(new String[0]);
+        }
+        return customersList.stream().map(OldCustomer::getRegion).filter(r -> r != null && !r.isEmpty()).distinct().sorted().toArray(String[]::new);
+    }
+
     // Helper to set font for JOptionPanes if needed, though it's tricky globally
     private void setUIFont(javax.swing.plaf.FontUIResource f) {
         java.util.Enumeration<Object> keys = UIManager.getDefaults().keys();
@@ -280,15 +473,16 @@ public class ElectricityBillingSystemGUI extends JFrame {
         private void registerNewCustomer() {
             String name = txtName.getText().trim(), nid = txtNid.getText().trim(), address = txtAddress.getText().trim(), email = txtEmail.getText().trim(), region = txtRegion.getText().trim(), phoneStr = txtPhoneNumber.getText().trim(), contractPath = txtContractPath.getText().trim();
             if (name.isEmpty() || nid.isEmpty() || address.isEmpty() || email.isEmpty() || region.isEmpty() || phoneStr.isEmpty() || contractPath.isEmpty()) { JOptionPane.showMessageDialog(this, "All fields are required.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
-            if (!nid.matches("\\d{14}")) { JOptionPane.showMessageDialog(this, "NID must be 14 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
-            if (!email.matches("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$")) { JOptionPane.showMessageDialog(this, "Invalid email format.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
-            if (!phoneStr.matches("\\d{11}")) { JOptionPane.showMessageDialog(this, "Phone must be 11 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
+            if (!Customer.NID_PATTERN.matcher(nid).matches()) { JOptionPane.showMessageDialog(this, "NID must be 14 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
+            if (!Customer.EMAIL_PATTERN.matcher(email).matches()) { JOptionPane.showMessageDialog(this, "Invalid email format.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
+            if (!Customer.PHONE_PATTERN.matcher(phoneStr).matches()) { JOptionPane.showMessageDialog(this, "Phone must be 11 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
             long phoneNumber; try { phoneNumber = Long.parseLong(phoneStr); } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(this, "Invalid phone number format.", "Validation Error", JOptionPane.ERROR_MESSAGE); return; }
-            for (OldCustomer existing : customersListRef) if (existing.getNid().equals(nid)) { JOptionPane.showMessageDialog(this, "NID " + nid + " already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE); return; }
-            NewCustomer newCustObj = new NewCustomer(); newCustObj.setName(name); newCustObj.setNid(nid); newCustObj.setAddress(address); newCustObj.setEmail(email); newCustObj.setRegion(region); newCustObj.setNumber(phoneNumber); newCustObj.setContract(contractPath); newCustObj.generateMeterCode();
-            for (OldCustomer existing : customersListRef) if (existing.getMeterCode().equals(newCustObj.getMeterCode())) { JOptionPane.showMessageDialog(this, "Generated Meter Code " + newCustObj.getMeterCode() + " already exists (possible NID suffix collision). Please try again or check NID.", "Registration Error", JOptionPane.ERROR_MESSAGE); return; }
-            OldCustomer registered = newCustObj.createNewCustomer(customersListRef);
-            if (registered != null) { JOptionPane.showMessageDialog(this, "Customer registered successfully!\nName: " + registered.getName() + "\nMeter Code: " + registered.getMeterCode(), "Success", JOptionPane.INFORMATION_MESSAGE); clearFormFields(); dispose(); }
+            if (OldCustomer.findCustomerByNid(customersListRef, nid) != null) { JOptionPane.showMessageDialog(this, "NID " + nid + " already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE); return; }
+            NewCustomer newCustObj = new NewCustomer(); newCustObj.setName(name); newCustObj.setNid(nid); newCustObj.setAddress(address); newCustObj.setEmail(email); newCustObj.setRegion(region); newCustObj.setNumber(phoneNumber); newCustObj.setContract(contractPath);
+            if (!newCustObj.assignMeterCode(customersListRef)) { JOptionPane.showMessageDialog(this, "No meter codes are left to assign.", "Registration Error", JOptionPane.ERROR_MESSAGE); return; }
+            if (OldCustomer.findCustomerByMeterCode(customersListRef, newCustObj.getMeterCode()) != null) { JOptionPane.showMessageDialog(this, "Generated Meter Code " + newCustObj.getMeterCode() + " already exists. Please try again or check NID.", "Registration Error", JOptionPane.ERROR_MESSAGE); return; }
+            OldCustomer registered = newCustObj.createNewCustomer(customersListRef, journal);
+            if (registered != null) { commitCustomers(saved -> { reportSaved(this, saved, "Customer registered successfully!\nName: " + registered.getName() + "\nMeter Code: " + registered.getMeterCode(), "Success"); clearFormFields(); dispose(); }); }
             else { JOptionPane.showMessageDialog(this, "Failed to register customer (possibly marked as duplicate internally by logic).", "Registration Error", JOptionPane.ERROR_MESSAGE); }
         }
     }
@@ -365,27 +559,36 @@ public class ElectricityBillingSystemGUI extends JFrame {
         private void payCustomerBill(String amountStr) {
             if (amountStr.isEmpty()) { JOptionPane.showMessageDialog(this, "Please enter a payment amount.", "Input Error", JOptionPane.ERROR_MESSAGE); return; }
             try { int amount = Integer.parseInt(amountStr); if (amount <= 0) { JOptionPane.showMessageDialog(this, "Payment amount must be positive.", "Input Error", JOptionPane.ERROR_MESSAGE); return; }
+                int unpaidMonths = currentCustomer.getUnpaidMonths();
                 String result = currentCustomer.payBill(currentCustomer.getMeterCode(), amount);
-                JOptionPane.showMessageDialog(this, result, "Payment Status", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                if (!result.startsWith("Error")) { FileSystem.saveCustomerData(customersListRef, CUSTOMERS_FILE); updateDisplay(); }
+                if (result.startsWith("Error")) { JOptionPane.showMessageDialog(this, result, "Payment Status", JOptionPane.ERROR_MESSAGE); return; }
+                if (ledger != null && !ledger.record(null, currentCustomer.getMeterCode(), amount)) { // Self-service, no operator
+                    currentCustomer.revertPayment(amount, unpaidMonths);
+                    JOptionPane.showMessageDialog(this, "Error: The payment could not be written to the payment ledger. Your balance due is unchanged.", "Payment Status", JOptionPane.ERROR_MESSAGE); return;
+                }
+                journal.logBalance(currentCustomer);
+                commitCustomers(customerSaved -> commitPayments(paymentSaved -> { reportSaved(this, customerSaved && paymentSaved, result, "Payment Status"); updateDisplay(); }));
             } catch (NumberFormatException e) { JOptionPane.showMessageDialog(this, "Invalid amount entered. Please use numbers only.", "Input Error", JOptionPane.ERROR_MESSAGE); }
         }
         private void enterNewReading(String readingStr) {
             if (readingStr.isEmpty()) { JOptionPane.showMessageDialog(this, "Please enter the new reading.", "Input Error", JOptionPane.ERROR_MESSAGE); return; }
             try { int reading = Integer.parseInt(readingStr);
                 String result = currentCustomer.enterMonthlyReading(reading);
-                JOptionPane.showMessageDialog(this, result, "Reading Update Status", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                if (!result.startsWith("Error")) { FileSystem.saveCustomerData(customersListRef, CUSTOMERS_FILE); updateDisplay(); }
+                if (result.startsWith("Error")) { JOptionPane.showMessageDialog(this, result, "Reading Update Status", JOptionPane.ERROR_MESSAGE); return; }
+                journal.logReading(currentCustomer);
+                commitCustomers(saved -> { reportSaved(this, saved, result, "Reading Update Status"); updateDisplay(); });
             } catch (NumberFormatException e) { JOptionPane.showMessageDialog(this, "Invalid reading entered. Please use numbers only.", "Input Error", JOptionPane.ERROR_MESSAGE); }
         }
         private void registerComplaint(JButton complainButton) { 
             currentCustomer.setComplain(true); 
-            FileSystem.saveCustomerData(customersListRef, CUSTOMERS_FILE); 
-            JOptionPane.showMessageDialog(this, "Complaint registered successfully for meter " + currentCustomer.getMeterCode(), "Complaint Registered", JOptionPane.INFORMATION_MESSAGE); 
-            complainButton.setText("✔️ Complaint Already Registered"); 
+            journal.logComplaint(currentCustomer); 
             complainButton.setEnabled(false); 
-            complainButton.setBackground(Color.LIGHT_GRAY);
-            updateDisplay(); 
+            commitCustomers(saved -> {
+                reportSaved(this, saved, "Complaint registered successfully for meter " + currentCustomer.getMeterCode(), "Complaint Registered"); 
+                complainButton.setText("✔️ Complaint Already Registered"); 
+                complainButton.setBackground(Color.LIGHT_GRAY);
+                updateDisplay(); 
+            });
         }
     }
 
@@ -395,6 +598,8 @@ public class ElectricityBillingSystemGUI extends JFrame {
         private List<OldCustomer> allCustomersRef;
         private List<Operator> allOperatorsRef;
         private JLabel lblTotalCollected, operatorWelcomeLabel;
+        private JTabbedPane tabbedPane;
+        private JButton btnClose;
 
         public OperatorDialog(Frame owner, Operator operator, List<OldCustomer> customers, List<Operator> operatorsList, String custFile, String opFile) {
             super(owner, "⚙️ Operator Panel - " + operator.getOperatorName(), true);
@@ -418,7 +623,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
             infoPanel.add(lblTotalCollected);
             add(infoPanel, BorderLayout.NORTH);
 
-            JTabbedPane tabbedPane = new JTabbedPane();
+            tabbedPane = new JTabbedPane();
             tabbedPane.setFont(GLOBAL_FONT_LABEL.deriveFont(Font.BOLD));
             tabbedPane.setBackground(SECONDARY_COLOR);
             tabbedPane.setForeground(PRIMARY_COLOR);
@@ -431,7 +636,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
             tabbedPane.addTab("🚫 Stop Meter/Cancel", createStopMeterPanel());
             add(tabbedPane, BorderLayout.CENTER);
 
-            JButton btnClose = new JButton("❌ Close Module"); styleDialogButton(btnClose);
+            btnClose = new JButton("❌ Close Module"); styleDialogButton(btnClose);
             JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10,10)); southPanel.setBackground(SECONDARY_COLOR);
             southPanel.add(btnClose);
             add(southPanel, BorderLayout.SOUTH);
@@ -441,6 +646,23 @@ public class ElectricityBillingSystemGUI extends JFrame {
         private void updateTotalCollectedDisplay() {
             lblTotalCollected.setText(" | Total Collected: " + currentOperator.getTotalCollected() + " EGP");
         }
+
+        // Blocks input while a background job works on the customer list
+        private void setModuleEnabled(boolean enabled) {
+            for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+                setEnabledDeep(tabbedPane.getComponentAt(i), enabled);
+            }
+            tabbedPane.setEnabled(enabled);
+            btnClose.setEnabled(enabled);
+            setDefaultCloseOperation(enabled ? JDialog.HIDE_ON_CLOSE : JDialog.DO_NOTHING_ON_CLOSE);
+        }
+
+        private void setEnabledDeep(Component component, boolean enabled) {
+            component.setEnabled(enabled);
+            if (component instanceof Container) {
+                for (Component child : ((Container) component).getComponents()) setEnabledDeep(child, enabled);
+            }
+        }
         
         private JPanel createStyledPanel() {
             JPanel panel = new JPanel(new GridBagLayout());
@@ -474,6 +696,34 @@ public class ElectricityBillingSystemGUI extends JFrame {
             
             gbc = createGbc(0,2,2, GridBagConstraints.CENTER); panel.add(btnCollect, gbc);
 
+            JButton btnImportLockbox = new JButton("🏦 Import Bank Payments File"); styleDialogButton(btnImportLockbox);
+            gbc = createGbc(0,3,2, GridBagConstraints.CENTER); panel.add(btnImportLockbox, gbc);
+            btnImportLockbox.addActionListener(e -> {
+                JFileChooser fc = new JFileChooser();
+                fc.setDialogTitle("Select Bank Lockbox File");
+                if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+                String inputFile = fc.getSelectedFile().getAbsolutePath();
+                String rejectsFile = inputFile + ".rejects";
+                // Same as the readings import: on the persistence thread, with the dialog disabled meanwhile
+                setModuleEnabled(false);
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                String[] error = new String[1];
+                BatchImport.Result[] result = new BatchImport.Result[1];
+                persistence.submit(() -> {
+                    error[0] = LockboxImport.verify(inputFile);
+                    if (error[0] != null) return false;
+                    result[0] = new LockboxImport(allCustomersRef, journal, operators, currentOperator, OPERATORS_FILE, ledger).importFile(inputFile, rejectsFile);
+                    if (result[0] == null) error[0] = "Could not read " + inputFile;
+                    return result[0] != null;
+                }, imported -> {
+                    setCursor(Cursor.getDefaultCursor());
+                    setModuleEnabled(true);
+                    updateTotalCollectedDisplay();
+                    if (!imported) { JOptionPane.showMessageDialog(this, "Error: The bank file was not imported.\n" + error[0], "Import Error", JOptionPane.ERROR_MESSAGE); return; }
+                    JOptionPane.showMessageDialog(this, result[0] + (result[0].getRejected() > 0 ? "\nRejected payments were written to " + rejectsFile : ""), "Bank Payments Import", !result[0].isComplete() ? JOptionPane.ERROR_MESSAGE : result[0].getRejected() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                });
+            });
+
             btnCollect.addActionListener(e -> {
                 String meter = txtMeterCode.getText().trim();
                 String amountStr = txtAmount.getText().trim();
@@ -482,14 +732,15 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 if(cust == null) { JOptionPane.showMessageDialog(this, "Customer with meter code \"" + meter + "\" not found.", "Error", JOptionPane.ERROR_MESSAGE); return; }
                 try {
                     int amount = Integer.parseInt(amountStr);
-                    String result = currentOperator.collectPayment(cust, amount);
-                    JOptionPane.showMessageDialog(this, result, "Payment Collection", result.startsWith("Error") || result.startsWith("Payment was unsuccessful") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                    if(!(result.startsWith("Error") || result.startsWith("Payment was unsuccessful"))) { 
-                        FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE); 
-                        FileSystem.saveOperatorData(allOperatorsRef, OPERATORS_FILE); 
-                        updateTotalCollectedDisplay(); 
-                        txtMeterCode.setText(""); txtAmount.setText("");
-                    }
+                    String result = currentOperator.collectPayment(cust, amount, ledger);
+                    if(result.startsWith("Error") || result.startsWith("Payment was unsuccessful")) { JOptionPane.showMessageDialog(this, result, "Payment Collection", JOptionPane.ERROR_MESSAGE); return; }
+                    journal.logBalance(cust); 
+                    // Written behind: one journal flush and one ledger flush per batch of payments
+                    customersSaver.markDirty();
+                    paymentsSaver.markDirty();
+                    JOptionPane.showMessageDialog(this, result, "Payment Collection", JOptionPane.INFORMATION_MESSAGE);
+                    updateTotalCollectedDisplay(); 
+                    txtMeterCode.setText(""); txtAmount.setText("");
                 } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(this, "Invalid amount. Please use numbers only.", "Error", JOptionPane.ERROR_MESSAGE); }
             });
             return panel;
@@ -522,7 +773,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
 
         private JPanel createViewBillsByRegionPanel() {
             JPanel panel = createStyledPanel(); GridBagConstraints gbc;
-            String[] regionsArray = allCustomersRef.stream().map(OldCustomer::getRegion).filter(r -> r != null && !r.isEmpty()).distinct().sorted().toArray(String[]::new);
+            String[] regionsArray = regionChoices(allCustomersRef);
             if (regionsArray.length == 0) regionsArray = new String[]{"N/A"};
             JComboBox<String> regionComboBox = new JComboBox<>(regionsArray); regionComboBox.setFont(GLOBAL_FONT_INPUT);
             JTextArea billsArea = new JTextArea(12, 45); billsArea.setFont(GLOBAL_FONT_INPUT); billsArea.setEditable(false);
@@ -561,6 +812,26 @@ public class ElectricityBillingSystemGUI extends JFrame {
             
             gbc = createGbc(0,2,2, GridBagConstraints.CENTER); panel.add(btnSubmitReading, gbc);
 
+            JButton btnImportReadings = new JButton("📂 Import Readings File"); styleDialogButton(btnImportReadings);
+            gbc = createGbc(0,3,2, GridBagConstraints.CENTER); panel.add(btnImportReadings, gbc);
+            btnImportReadings.addActionListener(e -> {
+                JFileChooser fc = new JFileChooser();
+                fc.setDialogTitle("Select Readings File (meterCode,reading)");
+                if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+                String inputFile = fc.getSelectedFile().getAbsolutePath();
+                String rejectsFile = inputFile + ".rejects";
+                // Runs on the persistence thread; the dialog is disabled meanwhile so the import is not started twice
+                setModuleEnabled(false);
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                BatchImport.Result[] result = new BatchImport.Result[1];
+                persistence.submit(() -> (result[0] = new ReadingImport(allCustomersRef, journal).importFile(inputFile, rejectsFile)) != null, imported -> {
+                    setCursor(Cursor.getDefaultCursor());
+                    setModuleEnabled(true);
+                    if (!imported) { JOptionPane.showMessageDialog(this, "Could not read " + inputFile, "Import Error", JOptionPane.ERROR_MESSAGE); return; }
+                    JOptionPane.showMessageDialog(this, result[0] + (result[0].getRejected() > 0 ? "\nRejected records were written to " + rejectsFile : ""), "Readings Import", !result[0].isComplete() ? JOptionPane.ERROR_MESSAGE : result[0].getRejected() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                });
+            });
+
             btnSubmitReading.addActionListener(e -> {
                 String meter = txtMeterCode.getText().trim();
                 String readingStr = txtReading.getText().trim();
@@ -570,11 +841,10 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 try {
                     int newReading = Integer.parseInt(readingStr);
                     String result = cust.enterMonthlyReading(newReading); 
-                    JOptionPane.showMessageDialog(this, result, "Reading Submission Status", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                    if(!result.startsWith("Error")) { 
-                        FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE); 
-                        txtMeterCode.setText(""); txtReading.setText("");
-                    }
+                    if(result.startsWith("Error")) { JOptionPane.showMessageDialog(this, result, "Reading Submission Status", JOptionPane.ERROR_MESSAGE); return; }
+                    journal.logReading(cust); 
+                    txtMeterCode.setText(""); txtReading.setText("");
+                    commitCustomers(saved -> reportSaved(this, saved, result, "Reading Submission Status"));
                 } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(this, "Invalid reading format. Please use numbers only.", "Error", JOptionPane.ERROR_MESSAGE); }
             });
             return panel;
@@ -594,22 +864,56 @@ public class ElectricityBillingSystemGUI extends JFrame {
             gbc = createGbc(0,1,1, GridBagConstraints.WEST); panel.add(lblPrice, gbc);
             gbc = createGbc(1,1,1, GridBagConstraints.WEST); panel.add(txtPricePerUnit, gbc);
             
-            gbc = createGbc(0,2,2, GridBagConstraints.CENTER); panel.add(btnDefineBill, gbc);
+            JCheckBox chkTariffTable = new JCheckBox("Use the tariff table (" + TARIFFS_FILE + ")"); chkTariffTable.setFont(GLOBAL_FONT_LABEL); chkTariffTable.setForeground(TEXT_COLOR_LIGHT); chkTariffTable.setOpaque(false);
+            chkTariffTable.setSelected(tariffs != null); chkTariffTable.setEnabled(tariffs != null);
+            chkTariffTable.addItemListener(e -> txtPricePerUnit.setEnabled(!chkTariffTable.isSelected()));
+            txtPricePerUnit.setEnabled(!chkTariffTable.isSelected());
+            gbc = createGbc(0,2,2, GridBagConstraints.WEST); panel.add(chkTariffTable, gbc);
+
+            gbc = createGbc(0,3,2, GridBagConstraints.CENTER); panel.add(btnDefineBill, gbc);
+
+            JButton btnBillAll = new JButton("🧾 Bill All Active Customers"); styleDialogButton(btnBillAll);
+            gbc = createGbc(0,4,2, GridBagConstraints.CENTER); panel.add(btnBillAll, gbc);
+
+            btnBillAll.addActionListener(e -> {
+                TariffTable billingTariffs;
+                if (chkTariffTable.isSelected()) {
+                    billingTariffs = tariffs;
+                } else {
+                    String priceStr = txtPricePerUnit.getText().trim();
+                    int price;
+                    try { price = Integer.parseInt(priceStr); } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(this, "Enter a valid price per unit first.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+                    if (price <= 0) { JOptionPane.showMessageDialog(this, "Error: Price per unit must be positive.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+                    billingTariffs = TariffTable.flat(price);
+                }
+                int confirm = JOptionPane.showConfirmDialog(this, "Bill every active customer at " + billingTariffs + "?", "Confirm Billing Run", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (confirm != JOptionPane.YES_OPTION) return;
+                // Runs on the persistence thread, after any queued saves; the dialog is disabled until it is done
+                setModuleEnabled(false);
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                BillingRun.Summary[] summary = new BillingRun.Summary[1];
+                persistence.submit(() -> (summary[0] = new BillingRun(allCustomersRef, billingTariffs).runAndCheckpoint(journal)).isCheckpointed(), checkpointed -> {
+                    setCursor(Cursor.getDefaultCursor());
+                    setModuleEnabled(true);
+                    if (summary[0] == null) { JOptionPane.showMessageDialog(this, "The billing run failed, see the log.", "Billing Run", JOptionPane.ERROR_MESSAGE); return; }
+                    String message = summary[0].toString() + (checkpointed ? "" : "\nWarning: the results could not be saved to " + CUSTOMERS_FILE + ".");
+                    JOptionPane.showMessageDialog(this, message, "Billing Run", checkpointed ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
+                });
+            });
 
             btnDefineBill.addActionListener(e -> {
                 String meter = txtMeterCode.getText().trim();
                 String priceStr = txtPricePerUnit.getText().trim();
-                if(meter.isEmpty() || priceStr.isEmpty()) { JOptionPane.showMessageDialog(this, "Meter code and price per unit are required.", "Error", JOptionPane.ERROR_MESSAGE); return; }
+                boolean useTable = chkTariffTable.isSelected();
+                if(meter.isEmpty() || (!useTable && priceStr.isEmpty())) { JOptionPane.showMessageDialog(this, "Meter code and price per unit are required.", "Error", JOptionPane.ERROR_MESSAGE); return; }
                 OldCustomer cust = OldCustomer.findCustomerByMeterCode(allCustomersRef, meter);
                 if(cust == null) { JOptionPane.showMessageDialog(this, "Customer not found.", "Error", JOptionPane.ERROR_MESSAGE); return; }
                 try {
-                    int price = Integer.parseInt(priceStr);
-                    String result = currentOperator.defineTariff(cust, price);
-                    JOptionPane.showMessageDialog(this, result, "Define Bill Status", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                    if(result.startsWith("✅")) { 
-                        FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE);
-                        txtMeterCode.setText(""); txtPricePerUnit.setText("");
-                    }
+                    String result = useTable ? currentOperator.defineTariff(cust, tariffs) : currentOperator.defineTariff(cust, Integer.parseInt(priceStr));
+                    if(!result.startsWith("✅")) { JOptionPane.showMessageDialog(this, result, "Define Bill Status", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE); return; }
+                    journal.logBalance(cust);
+                    txtMeterCode.setText(""); txtPricePerUnit.setText("");
+                    commitCustomers(saved -> reportSaved(this, saved, result, "Define Bill Status"));
                 } catch (NumberFormatException ex) { JOptionPane.showMessageDialog(this, "Invalid price per unit. Please use numbers only.", "Error", JOptionPane.ERROR_MESSAGE); }
             });
             return panel;
@@ -633,11 +937,10 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to stop meter " + meter + " for " + cust.getName() + " and cancel their subscription?", "Confirm Cancellation", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
                 if (confirm == JOptionPane.YES_OPTION) {
                     String result = currentOperator.stopMeterAndCancelSubscription(cust);
-                    JOptionPane.showMessageDialog(this, result, "Meter Stoppage", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
-                    if(result.contains("has been stopped")) { 
-                        FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE); 
-                        txtMeterCode.setText(""); 
-                    }
+                    if(!result.contains("has been stopped")) { JOptionPane.showMessageDialog(this, result, "Meter Stoppage", result.startsWith("Error") ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE); return; }
+                    journal.logStopAndCancel(cust); 
+                    txtMeterCode.setText(""); 
+                    commitCustomers(saved -> reportSaved(this, saved, result, "Meter Stoppage"));
                 }
             });
             return panel;
@@ -652,6 +955,8 @@ public class ElectricityBillingSystemGUI extends JFrame {
         private JLabel adminWelcomeLabel;
         private JButton btnViewAllOps;
         private JButton btnViewAllCust;
+        private CustomerTableModel customerTableModel;
+        private JTable customerTable;
 
         public AdminDialog(Frame owner, Admin admin, List<OldCustomer> customersList, List<Operator> operatorsList, String custFile, String opFile) {
             super(owner, "👑 Admin Panel - " + admin.getAdminName(), true);
@@ -699,7 +1004,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
 
         private JPanel createViewBillsByRegionPanel() {
             JPanel panel = createStyledAdminPanel();
-            String[] regionsArray = allCustomersRef.stream().map(OldCustomer::getRegion).filter(r -> r != null && !r.isEmpty()).distinct().sorted().toArray(String[]::new);
+            String[] regionsArray = regionChoices(allCustomersRef);
             if (regionsArray.length == 0) regionsArray = new String[]{"N/A"};
             JComboBox<String> regionComboBox = new JComboBox<>(regionsArray); regionComboBox.setFont(GLOBAL_FONT_INPUT);
             JTextArea displayArea = new JTextArea(18, 60); displayArea.setFont(GLOBAL_FONT_INPUT); displayArea.setEditable(false);
@@ -741,7 +1046,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
 
         private JPanel createConsumptionStatsPanel() {
             JPanel panel = createStyledAdminPanel();
-            String[] regionsArray = allCustomersRef.stream().map(OldCustomer::getRegion).filter(r -> r != null && !r.isEmpty()).distinct().sorted().toArray(String[]::new);
+            String[] regionsArray = regionChoices(allCustomersRef);
             if (regionsArray.length == 0) regionsArray = new String[]{"N/A"};
             JComboBox<String> regionComboBox = new JComboBox<>(regionsArray); regionComboBox.setFont(GLOBAL_FONT_INPUT);
             JTextArea displayArea = new JTextArea(18, 60); displayArea.setFont(GLOBAL_FONT_INPUT); displayArea.setEditable(false);
@@ -765,51 +1070,144 @@ public class ElectricityBillingSystemGUI extends JFrame {
 
         private JPanel createManageCustomersPanel() {
             JPanel panel = createStyledAdminPanel();
-            JTextArea displayArea = new JTextArea(15, 60); displayArea.setFont(GLOBAL_FONT_INPUT); displayArea.setEditable(false);
-            displayArea.setLineWrap(true); displayArea.setWrapStyleWord(true);
-            JButton btnViewAllCust = new JButton("📋 View All Customers"); styleDialogButton(btnViewAllCust);
+            btnViewAllCust = new JButton("📋 View All Customers"); styleDialogButton(btnViewAllCust);
             JButton btnAddCustomer = new JButton("➕ Add New Customer"); styleDialogButton(btnAddCustomer);
             JButton btnUpdateCustomer = new JButton("✏️ Update Customer"); styleDialogButton(btnUpdateCustomer);
             JButton btnDeleteCustomer = new JButton("🗑️ Delete Customer"); styleDialogButton(btnDeleteCustomer);
+            JButton btnImportCustomers = new JButton("📂 Import New Customers"); styleDialogButton(btnImportCustomers);
             
             JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5)); topPanel.setBackground(SECONDARY_COLOR);
-            topPanel.add(btnViewAllCust);topPanel.add(btnAddCustomer);topPanel.add(btnUpdateCustomer);topPanel.add(btnDeleteCustomer);
-            panel.add(topPanel, BorderLayout.NORTH);
-            panel.add(new JScrollPane(displayArea), BorderLayout.CENTER);
+            topPanel.add(btnViewAllCust);topPanel.add(btnAddCustomer);topPanel.add(btnUpdateCustomer);topPanel.add(btnDeleteCustomer);topPanel.add(btnImportCustomers);
+
+            // Only the visible rows are ever rendered; filtering and sorting work on the model's row indexes
+            customerTableModel = new CustomerTableModel(allCustomersRef);
+            customerTable = new JTable(customerTableModel);
+            customerTable.setFont(GLOBAL_FONT_INPUT); customerTable.setRowHeight(22);
+            customerTable.setAutoCreateRowSorter(false);
+            customerTable.getTableHeader().setReorderingAllowed(false);
+            customerTable.getTableHeader().setToolTipText("Click a column to sort, again to reverse");
+            customerTable.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+                @Override
+                public void mouseClicked(java.awt.event.MouseEvent e) {
+                    int column = customerTable.columnAtPoint(e.getPoint());
+                    if (column >= 0) customerTableModel.sortBy(customerTable.convertColumnIndexToModel(column));
+                }
+            });
+            customerTable.setToolTipText("Double-click a customer to update them");
+            customerTable.addMouseListener(new java.awt.event.MouseAdapter() {
+                @Override
+                public void mouseClicked(java.awt.event.MouseEvent e) {
+                    // Disabled while a customer import runs on the persistence thread
+                    if (e.getClickCount() == 2 && customerTable.isEnabled() && customerTable.rowAtPoint(e.getPoint()) >= 0) showUpdateCustomerDialog();
+                }
+            });
+
+            JComboBox<String> regionFilter = new JComboBox<>(); regionFilter.setFont(GLOBAL_FONT_INPUT);
+            JTextField txtFilter = new JTextField(18); txtFilter.setFont(GLOBAL_FONT_INPUT);
+            txtFilter.setToolTipText("Part of a name, NID, meter code or phone number; results update as you type");
+            JButton btnFilter = new JButton("🔍 Filter"); styleDialogButton(btnFilter);
+            JLabel lblShowing = new JLabel(); lblShowing.setFont(GLOBAL_FONT_LABEL); lblShowing.setForeground(TEXT_COLOR_LIGHT);
+            JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5)); filterPanel.setBackground(SECONDARY_COLOR);
+            JLabel lblRegion = new JLabel("Region:"); lblRegion.setFont(GLOBAL_FONT_LABEL); lblRegion.setForeground(TEXT_COLOR_LIGHT);
+            JLabel lblSearch = new JLabel("Search:"); lblSearch.setFont(GLOBAL_FONT_LABEL); lblSearch.setForeground(TEXT_COLOR_LIGHT);
+            filterPanel.add(lblRegion); filterPanel.add(regionFilter); filterPanel.add(lblSearch); filterPanel.add(txtFilter); filterPanel.add(btnFilter); filterPanel.add(lblShowing);
+
+            JPanel northPanel = new JPanel(new BorderLayout()); northPanel.setBackground(SECONDARY_COLOR);
+            northPanel.add(topPanel, BorderLayout.NORTH);
+            northPanel.add(filterPanel, BorderLayout.SOUTH);
+            panel.add(northPanel, BorderLayout.NORTH);
+            panel.add(new JScrollPane(customerTable), BorderLayout.CENTER);
+
+            Runnable showCount = () -> lblShowing.setText("Showing " + customerTableModel.getRowCount() + " of " + customerTableModel.getTotalCount() + " customers");
+            boolean[] reloading = { false }; // Refilling the combo box fires its listener for every item
+            Runnable reloadRegions = () -> {
+                reloading[0] = true;
+                Object selected = regionFilter.getSelectedItem();
+                regionFilter.removeAllItems();
+                regionFilter.addItem("All regions");
+                for (String region : regionChoices(allCustomersRef)) regionFilter.addItem(region);
+                regionFilter.setSelectedItem(selected != null ? selected : "All regions");
+                reloading[0] = false;
+            };
+            reloadRegions.run();
+            ActionListener applyFilter = e -> {
+                if (reloading[0]) return;
+                int index = regionFilter.getSelectedIndex();
+                customerTableModel.setFilter(index <= 0 ? null : (String) regionFilter.getSelectedItem(), txtFilter.getText());
+                showCount.run();
+            };
+            btnFilter.addActionListener(applyFilter);
+            txtFilter.addActionListener(applyFilter);
+            regionFilter.addActionListener(applyFilter);
+            // Search as you type, once typing pauses: the registry's search index answers in milliseconds,
+            // but there is no point filtering for every keystroke of a name
+            javax.swing.Timer searchDelay = new javax.swing.Timer(250, applyFilter);
+            searchDelay.setRepeats(false);
+            txtFilter.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+                @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { searchDelay.restart(); }
+                @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { searchDelay.restart(); }
+                @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { searchDelay.restart(); }
+            });
+            showCount.run();
 
             btnViewAllCust.addActionListener(e -> {
-                StringBuilder sb = new StringBuilder("All Customers:\n");
-                if (allCustomersRef.isEmpty()) sb.append("No customers found.\n");
-                else for(OldCustomer cust : allCustomersRef) {
-                    sb.append(String.format("Name: %s, NID: %s, Meter: %s, Region: %s, Balance: %d EGP, Cancelled: %s\n", 
-                                          cust.getName(), cust.getNid(), cust.getMeterCode(), cust.getRegion(), cust.getBalanceDue(), cust.isStopAndCancel() ? "Yes" : "No"));
-                }
-                displayArea.setText(sb.toString());
+                // Picks up added, changed and deleted customers, keeping the filter and sort order
+                reloadRegions.run();
+                customerTableModel.refresh();
+                applyFilter.actionPerformed(null); // The selected region may be gone
             });
 
-            btnAddCustomer.addActionListener(e -> showAddCustomerDialog(displayArea));
-            btnUpdateCustomer.addActionListener(e -> showUpdateCustomerDialog(displayArea));
+            btnAddCustomer.addActionListener(e -> showAddCustomerDialog());
+            btnImportCustomers.addActionListener(e -> {
+                JFileChooser fc = new JFileChooser();
+                fc.setDialogTitle("Select New Customers File (name,nid,email,phone,region,address)");
+                if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+                String inputFile = fc.getSelectedFile().getAbsolutePath();
+                String rejectsFile = inputFile + ".rejects";
+                // Runs on the persistence thread; the buttons and the table (double-click updates a customer) are
+                // disabled meanwhile, so nothing else changes the customers and the import is not started twice
+                for (Component c : topPanel.getComponents()) c.setEnabled(false);
+                customerTable.setEnabled(false);
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                BatchImport.Result[] result = new BatchImport.Result[1];
+                persistence.submit(() -> (result[0] = new CustomerImport((CustomerRegistry) allCustomersRef, journal).importFile(inputFile, rejectsFile)) != null, imported -> {
+                    setCursor(Cursor.getDefaultCursor());
+                    for (Component c : topPanel.getComponents()) c.setEnabled(true);
+                    customerTable.setEnabled(true);
+                    if (!imported) { JOptionPane.showMessageDialog(this, "Could not read " + inputFile, "Import Error", JOptionPane.ERROR_MESSAGE); return; }
+                    JOptionPane.showMessageDialog(this, result[0] + (result[0].getRejected() > 0 ? "\nRejected customers were written to " + rejectsFile : ""), "New Customers Import", !result[0].isComplete() ? JOptionPane.ERROR_MESSAGE : result[0].getRejected() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                    btnViewAllCust.doClick();
+                });
+            });
+            btnUpdateCustomer.addActionListener(e -> showUpdateCustomerDialog());
             
             btnDeleteCustomer.addActionListener(e -> {
-                String meterCode = JOptionPane.showInputDialog(this, "Enter Meter Code of customer to delete:", "Delete Customer", JOptionPane.PLAIN_MESSAGE);
+                String meterCode = (String) JOptionPane.showInputDialog(this, "Enter Meter Code of customer to delete:", "Delete Customer", JOptionPane.PLAIN_MESSAGE, null, null, selectedMeterCode());
                 if(meterCode != null && !meterCode.trim().isEmpty()) {
                     String result = currentAdmin.deleteCustomerByMeterCode(allCustomersRef, meterCode.trim());
-                    JOptionPane.showMessageDialog(this, result, "Delete Customer Status", result.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
-                    if(result.startsWith("✅")) {
-                        FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE);
-                        btnViewAllCust.doClick(); 
-                    }
+                    if(!result.startsWith("✅")) { JOptionPane.showMessageDialog(this, result, "Delete Customer Status", JOptionPane.ERROR_MESSAGE); return; }
+                    journal.logDelete(meterCode.trim());
+                    commitCustomers(saved -> { reportSaved(this, saved, result, "Delete Customer Status"); btnViewAllCust.doClick(); });
                 }
             });
             return panel;
         }
-        private void showUpdateCustomerDialog(JTextArea displayArea) {
+        // Meter code of the customer selected in the list (found with the search box), offered as the default
+        private String selectedMeterCode() {
+            int row = customerTable == null ? -1 : customerTable.getSelectedRow();
+            return row < 0 ? "" : customerTableModel.getCustomerAt(customerTable.convertRowIndexToModel(row)).getMeterCode();
+        }
+
+        private void showUpdateCustomerDialog() {
     // First, get the meter code of customer to update
-    String meterCode = JOptionPane.showInputDialog(
+    String meterCode = (String) JOptionPane.showInputDialog(
         this, 
         "Enter Meter Code of customer to update:", 
         "Update Customer", 
-        JOptionPane.PLAIN_MESSAGE
+        JOptionPane.PLAIN_MESSAGE,
+        null,
+        null,
+        selectedMeterCode()
     );
     
     if (meterCode == null || meterCode.trim().isEmpty()) {
@@ -875,19 +1273,17 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 newPhone
             );
             
-            // Show result
-            JOptionPane.showMessageDialog(
-                this, 
-                updateResult, 
-                "Update Customer Status", 
-                updateResult.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE
-            );
+            if (!updateResult.startsWith("✅")) {
+                JOptionPane.showMessageDialog(this, updateResult, "Update Customer Status", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
-            // If successful, save and refresh
-            if (updateResult.startsWith("✅")) {
-                FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE);
+            // Save, then show the result and refresh once it is on disk
+            journal.logUpsert(customerToUpdate);
+            commitCustomers(saved -> {
+                reportSaved(this, saved, updateResult, "Update Customer Status");
                 btnViewAllCust.doClick(); // Refresh the list
-            }
+            });
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(
                 this, 
@@ -899,7 +1295,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
     }
 }
         
-        private void showAddCustomerDialog(JTextArea displayArea) {
+        private void showAddCustomerDialog() {
     // Create input fields
     JTextField txtName = new JTextField(20);
     JTextField txtNid = new JTextField(20);
@@ -941,25 +1337,22 @@ public class ElectricityBillingSystemGUI extends JFrame {
             newCustomer.setEmail(txtEmail.getText().trim());
             newCustomer.setRegion(txtRegion.getText().trim());
             newCustomer.setNumber(Long.parseLong(txtPhone.getText().trim()));
-            newCustomer.generateMeterCode(); // Generate meter code
+            if (!newCustomer.assignMeterCode(allCustomersRef)) {
+                JOptionPane.showMessageDialog(this, "No meter codes are left to assign.", "Add Customer Status", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
             // Call admin method to add customer
             String addResult = currentAdmin.addNewCustomer(allCustomersRef, newCustomer);
             
-            // Show result
-            JOptionPane.showMessageDialog(
-                this, 
-                addResult, 
-                "Add Customer Status", 
-                addResult.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE
-            );
-            
-            // If successful, save and refresh
-            if (addResult.startsWith("✅")) {
-                FileSystem.saveCustomerData(allCustomersRef, CUSTOMERS_FILE);
-                displayArea.setText(""); // Clear display
-                // You might want to trigger a refresh of the customer list here
+            if (!addResult.startsWith("✅")) {
+                JOptionPane.showMessageDialog(this, addResult, "Add Customer Status", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            
+            // Save, then show the result once it is on disk
+            journal.logUpsert(OldCustomer.findCustomerByMeterCode(allCustomersRef, newCustomer.getMeterCode()));
+            commitCustomers(saved -> { reportSaved(this, saved, addResult, "Add Customer Status"); btnViewAllCust.doClick(); });
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(
                 this, 
@@ -991,7 +1384,7 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 StringBuilder sb = new StringBuilder("All Operators:\n");
                 if (allOperatorsRef.isEmpty()) sb.append("No operators found.\n");
                 else for(Operator op : allOperatorsRef) {
-                    sb.append(String.format("Name: %s, Total Collected: %.2f EGP\n", op.getOperatorName(), op.getTotalCollected()));
+                    sb.append(String.format("Name: %s, Total Collected: %d EGP\n", op.getOperatorName(), op.getTotalCollected()));
                 }
                 displayArea.setText(sb.toString());
             });
@@ -1000,11 +1393,8 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 String opName = JOptionPane.showInputDialog(this, "Enter new operator\'s name:", "Add Operator", JOptionPane.PLAIN_MESSAGE);
                 if(opName != null && !opName.trim().isEmpty()) {
                     String result = currentAdmin.addNewOperator(allOperatorsRef, opName.trim());
-                    JOptionPane.showMessageDialog(this, result, "Add Operator Status", result.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
-                    if(result.startsWith("✅")) {
-                        FileSystem.saveOperatorData(allOperatorsRef, OPERATORS_FILE);
-                        btnViewAllOps.doClick(); 
-                    } 
+                    if(!result.startsWith("✅")) { JOptionPane.showMessageDialog(this, result, "Add Operator Status", JOptionPane.ERROR_MESSAGE); return; }
+                    saveOperators(allOperatorsRef, OPERATORS_FILE, saved -> { reportSaved(this, saved, result, "Add Operator Status"); btnViewAllOps.doClick(); }); 
                 }
             });
             
@@ -1015,11 +1405,8 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 String opName = JOptionPane.showInputDialog(this, "Enter name of operator to delete:", "Delete Operator", JOptionPane.PLAIN_MESSAGE);
                 if(opName != null && !opName.trim().isEmpty()) {
                     String result = currentAdmin.deleteOperatorByName(allOperatorsRef, opName.trim());
-                     JOptionPane.showMessageDialog(this, result, "Delete Operator Status", result.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
-                    if(result.startsWith("✅")) {
-                        FileSystem.saveOperatorData(allOperatorsRef, OPERATORS_FILE);
-                        btnViewAllOps.doClick(); 
-                    }
+                     if(!result.startsWith("✅")) { JOptionPane.showMessageDialog(this, result, "Delete Operator Status", JOptionPane.ERROR_MESSAGE); return; }
+                    saveOperators(allOperatorsRef, OPERATORS_FILE, saved -> { reportSaved(this, saved, result, "Delete Operator Status"); btnViewAllOps.doClick(); });
                 }
             });
             return panel;
@@ -1111,19 +1498,16 @@ public class ElectricityBillingSystemGUI extends JFrame {
                 newTotal
             );
             
-            // Show result
-            JOptionPane.showMessageDialog(
-                this, 
-                updateResult, 
-                "Update Status", 
-                updateResult.startsWith("✅") ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE
-            );
+            if (!updateResult.startsWith("✅")) {
+                JOptionPane.showMessageDialog(this, updateResult, "Update Status", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
-            // Save and refresh if successful
-            if (updateResult.startsWith("✅")) {
-                FileSystem.saveOperatorData(allOperatorsRef, OPERATORS_FILE);
+            // Save, then show the result and refresh once it is on disk
+            saveOperators(allOperatorsRef, OPERATORS_FILE, saved -> {
+                reportSaved(this, saved, updateResult, "Update Status");
                 btnViewAllOps.doClick(); // Refresh the list
-            }
+            });
             
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(
@@ -1,40 +1,128 @@
 import java.util.HashMap;
 import java.util.List;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 public class FileSystem {
+    private static final String LEDGER_ENTRIES = "Ledger Entries: ";
 
     // Saves customer data. Returns true on success, false on failure.
+    // A file that already holds a binary snapshot (see BinarySnapshot) stays binary, otherwise it is text.
     public static boolean saveCustomerData(List<OldCustomer> customers, String filename) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+        if (BinarySnapshot.isBinarySnapshot(filename)) {
+            return BinarySnapshot.save(customers, filename);
+        }
+        return saveCustomerText(customers, filename);
+    }
+
+    // Saves customer data in the text format.
+    // The data is written to a temporary file first and moved over the old one, so a crash mid-save
+    // never leaves a half-written snapshot behind (the journal is replayed on top of it at startup).
+    public static boolean saveCustomerText(List<OldCustomer> customers, String filename) {
+        File temp = new File(filename + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file))) {
             for (OldCustomer customer : customers) {
-                writer.write("Name: " + customer.getName() + "\n");
-                writer.write("NID: " + customer.getNid() + "\n");
-                writer.write("Address: " + customer.getAddress() + "\n");
-                writer.write("Email: " + customer.getEmail() + "\n");
-                writer.write("Meter Code: " + customer.getMeterCode() + "\n");
-                writer.write("Region: " + customer.getRegion() + "\n");
-                writer.write("Phone Number: " + customer.getNumber() + "\n");
-                writer.write("Current Reading: " + customer.getCurrentReading() + "\n");
-                writer.write("Last Reading: " + customer.getLastReading() + "\n");
-                writer.write("Balance Due: " + customer.getBalanceDue() + "\n");
-                writer.write("Unpaid Months: " + customer.getUnpaidMonths() + "\n");
-                writer.write("Complaint: " + customer.isComplain() + "\n");
-                writer.write("Stop and Cancel: " + customer.isStopAndCancel() + "\n");
-                writer.write("--------------------------------------------------\n");
+                writeCustomerText(writer, customer);
             }
-            // System.out.println("✅ Customer data saved to " + filename); // GUI will handle notifications
-            return true;
+            writer.flush();
+            file.getFD().sync(); // On the disk before it replaces the old snapshot
         } catch (IOException e) {
             // System.out.println("❌ Error saving customer data to " + filename); // GUI will handle error messages
             e.printStackTrace(); // Log error for debugging
             return false;
         }
+        // System.out.println("✅ Customer data saved to " + filename); // GUI will handle notifications
+        return replaceFile(temp, new File(filename));
+    }
+
+    // One customer record of the text format; also used by DatasetGenerator, which streams its customers
+    static void writeCustomerText(Writer writer, OldCustomer customer) throws IOException {
+        writer.write("Name: " + customer.getName() + "\n");
+        writer.write("NID: " + customer.getNid() + "\n");
+        writer.write("Address: " + customer.getAddress() + "\n");
+        writer.write("Email: " + customer.getEmail() + "\n");
+        writer.write("Meter Code: " + customer.getMeterCode() + "\n");
+        writer.write("Region: " + customer.getRegion() + "\n");
+        writer.write("Phone Number: " + customer.getNumber() + "\n");
+        writer.write("Current Reading: " + customer.getCurrentReading() + "\n");
+        writer.write("Last Reading: " + customer.getLastReading() + "\n");
+        writer.write("Balance Due: " + customer.getBalanceDue() + "\n");
+        writer.write("Unpaid Months: " + customer.getUnpaidMonths() + "\n");
+        writer.write("Complaint: " + customer.isComplain() + "\n");
+        writer.write("Stop and Cancel: " + customer.isStopAndCancel() + "\n");
+        writer.write("--------------------------------------------------\n");
+    }
+
+    // Cuts an append-only text file (journal, ledger) back to its last complete line. A crash while
+    // appending can leave a half-written last line; appending to it would glue the next record onto
+    // the fragment and lose both. Missing files are fine. Returns false on I/O failure.
+    static boolean truncateToLastLine(File file) {
+        if (!file.exists()) {
+            return true;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = raf.length();
+            byte[] buffer = new byte[8192];
+            long pos = end;
+            while (pos > 0) {
+                int n = (int) Math.min(buffer.length, pos);
+                raf.seek(pos - n);
+                raf.readFully(buffer, 0, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        long keep = pos - n + i + 1;
+                        if (keep < end) {
+                            System.err.println("Dropping an incomplete last line (" + (end - keep) + " bytes) from " + file);
+                            raf.setLength(keep);
+                        }
+                        return true;
+                    }
+                }
+                pos -= n;
+            }
+            if (end > 0) {
+                System.err.println("Dropping an incomplete last line (" + end + " bytes) from " + file);
+                raf.setLength(0);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Moves a fully written temporary file over the target, atomically where the file system allows it
+    static boolean replaceFile(File temp, File target) {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e2) {
+                e2.printStackTrace();
+                return false;
+            }
+        }
+        return true;
     }
 
     // Loads customer data. Returns true on success, false on failure.
+    // Any journal records written since the last snapshot are replayed on top of the loaded data.
     public static boolean loadCustomersFromFile(List<OldCustomer> customers, String filename) {
+        return loadCustomerSnapshot(customers, filename) && CustomerJournal.replay(customers, filename) >= 0;
+    }
+
+    // Loads only the snapshot file, without replaying its journal
+    public static boolean loadCustomerSnapshot(List<OldCustomer> customers, String filename) {
+        if (BinarySnapshot.isBinarySnapshot(filename)) {
+            return BinarySnapshot.load(customers, filename);
+        }
+        if (new File(filename).length() >= ParallelCustomerLoader.PARALLEL_THRESHOLD) {
+            return new ParallelCustomerLoader().load(customers, filename);
+        }
         customers.clear(); // Clear existing list before loading
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
             String line;
@@ -91,19 +179,50 @@ public class FileSystem {
 
     // Saves operator data. Returns true on success, false on failure.
     public static boolean saveOperatorData(List<Operator> operators, String filename) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+        return saveOperatorData(operators, filename, -1);
+    }
+
+    // Saves operator data as a checkpoint of the payment ledger: the file ends with the number of
+    // ledger entries the totals include (none is written for a negative count). See PaymentLedger.
+    public static boolean saveOperatorData(List<Operator> operators, String filename, long ledgerEntries) {
+        File temp = new File(filename + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file))) {
             for (Operator operator : operators) {
                 writer.write("Operator Name: " + operator.getOperatorName() + "\n");
                 writer.write("Total Collected: " + operator.getTotalCollected() + "\n");
                 writer.write("--------------------------------------------------\n");
             }
-            // System.out.println("✅ Operator data saved to " + filename); // GUI will handle notifications
-            return true;
+            if (ledgerEntries >= 0) {
+                writer.write(LEDGER_ENTRIES + ledgerEntries + "\n");
+            }
+            writer.flush();
+            file.getFD().sync();
         } catch (IOException e) {
             // System.out.println("❌ Error saving operator data to " + filename); // GUI will handle error messages
             e.printStackTrace();
             return false;
         }
+        // System.out.println("✅ Operator data saved to " + filename); // GUI will handle notifications
+        return replaceFile(temp, new File(filename));
+    }
+
+    // Number of payment ledger entries included in the operators file, 0 if it has no such line
+    public static long loadOperatorLedgerEntries(String filename) {
+        long entries = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(LEDGER_ENTRIES)) {
+                    entries = Long.parseLong(line.substring(LEDGER_ENTRIES.length()).trim());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return entries;
     }
 
     // Loads operator data. Returns true on success, false on failure.
@@ -112,7 +231,7 @@ public class FileSystem {
     try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
         String line;
         String operatorName = null;
-        int totalCollected = 0;
+        long totalCollected = 0;
         boolean readingOperator = false;
 
         while ((line = reader.readLine()) != null) {
@@ -133,7 +252,9 @@ public class FileSystem {
                 readingOperator = true;
             } else if (line.startsWith("Total Collected: ") && readingOperator) {
                 try {
-                    totalCollected = Integer.parseInt(line.substring("Total Collected: ".length()).trim());
+                    String value = line.substring("Total Collected: ".length()).trim();
+                    // Older files hold the total as a decimal ("150.0")
+                    totalCollected = value.indexOf('.') >= 0 ? (long) Double.parseDouble(value) : Long.parseLong(value);
                 } catch (NumberFormatException e) {
                     totalCollected = 0; // Default value if parsing fails
                 }
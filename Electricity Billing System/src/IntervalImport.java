@@ -0,0 +1,70 @@
+import java.time.LocalDate;
+import java.util.List;
+
+// Bulk import of smart meter interval data, as exported by the meter head-end system:
+// "MTR-1234,202610171415,350" is meter MTR-1234 using 350 Wh in the 15 minutes starting
+// 2026-10-17 14:15. Records go to an IntervalStore; meters must belong to a known customer.
+// A day's export holds tens of millions of records, so parsing allocates nothing but the meter code,
+// and the store is only forced to disk every BATCH_SIZE records.
+public class IntervalImport extends BatchImport {
+    public static final int BATCH_SIZE = 1000000;
+
+    private final List<OldCustomer> customers;
+    private final IntervalStore store;
+    // Records arrive grouped by time, so the last date's epoch day is reused
+    private long lastDate = -1;
+    private long lastEpochDay;
+
+    public IntervalImport(List<OldCustomer> customers, CustomerJournal journal, IntervalStore store) {
+        super(journal);
+        this.customers = customers;
+        this.store = store;
+        setBatchSize(BATCH_SIZE);
+    }
+
+    @Override
+    protected boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "meter", 0, 5);
+    }
+
+    @Override
+    protected String applyRecord(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        if (second < 0) {
+            return "Record is not meterCode,yyyyMMddHHmm,wattHours";
+        }
+        int from = first + 1;
+        while (from < second && line.charAt(from) == ' ') from++;
+        if (second - from < 12) {
+            return "Time is not yyyyMMddHHmm";
+        }
+        int date = parseInt(line, from, from + 8);
+        int minutes = parseInt(line, from + 8, from + 10) * 60 + parseInt(line, from + 10, from + 12);
+        if (line.substring(from + 12, second).trim().length() > 0) {
+            return "Time is not yyyyMMddHHmm";
+        }
+        if (minutes >= 24 * 60 || minutes % IntervalStore.MINUTES_PER_INTERVAL != 0) {
+            return "Time is not the start of a " + IntervalStore.MINUTES_PER_INTERVAL + "-minute interval";
+        }
+        if (date != lastDate) {
+            // Throws on an invalid date, which is reported as a malformed record
+            lastEpochDay = LocalDate.of(date / 10000, date / 100 % 100, date % 100).toEpochDay();
+            lastDate = date;
+        }
+        int wattHours = parseInt(line, second + 1, line.length());
+        String meterCode = line.substring(0, first).trim();
+        if (OldCustomer.findCustomerByMeterCode(customers, meterCode) == null) {
+            return "Unknown meter code " + meterCode;
+        }
+        if (!store.put(meterCode, lastEpochDay, minutes / IntervalStore.MINUTES_PER_INTERVAL, wattHours)) {
+            throw new IllegalStateException("could not write to the interval store");
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean commitBatch() {
+        return store.force();
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Storage for smart meter interval data: the energy (in watt-hours) each meter used in each
+// 15-minute interval, 96 per day. Data this size (tens of millions of values a day) would not fit
+// in OldCustomer or on the heap, so it lives in memory-mapped files and only the meter index is
+// kept in memory.
+//
+// Directory layout:
+//   meters.txt      one meter code per line; the line number is the meter's slot
+//   YYYYMMDD.dat    one file per day: for each slot, 96 ints (4 bytes, big-endian), 0 when no data
+// A day file is mapped in blocks of BLOCK_SLOTS meters, created as slots get used, so it grows with
+// the fleet without ever being copied. Only a few days stay mapped at a time (MAPPED_DAYS).
+// Storing an interval twice overwrites it, so importing the same file again does not double count.
+//
+// closeBillingPeriod turns the intervals of a billing period into an ordinary monthly reading,
+// after which Operator.defineTariff and BillingRun bill smart meters like any other.
+public class IntervalStore {
+    public static final String DEFAULT_DIRECTORY = "Intervals";
+    public static final int INTERVALS_PER_DAY = 96;
+    public static final int MINUTES_PER_INTERVAL = 15;
+    private static final int BLOCK_SLOTS = 4096;
+    private static final int SLOT_BYTES = INTERVALS_PER_DAY * 4;
+    private static final long BLOCK_BYTES = (long) BLOCK_SLOTS * SLOT_BYTES; // 1.5 MB
+    private static final int MAPPED_DAYS = 8;
+    private static final String METERS_FILE = "meters.txt";
+    private static final DateTimeFormatter DAY_FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final File directory;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> meterCodes = new ArrayList<>();
+    private BufferedWriter metersWriter;
+    // Least recently used day first; evicted days are forced to disk and left to the GC to unmap
+    private final LinkedHashMap<Long, Day> mappedDays = new LinkedHashMap<Long, Day>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Day> eldest) {
+            if (size() <= MAPPED_DAYS) {
+                return false;
+            }
+            eldest.getValue().close();
+            return true;
+        }
+    };
+
+    private IntervalStore(File directory) {
+        this.directory = directory;
+    }
+
+    // Opens (creating if needed) the store in the given directory. Returns null if it cannot be read.
+    public static IntervalStore open(String directory) {
+        IntervalStore store = new IntervalStore(new File(directory));
+        return store.load() ? store : null;
+    }
+
+    private boolean load() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Could not create " + directory);
+            return false;
+        }
+        File file = new File(directory, METERS_FILE);
+        if (!file.exists()) {
+            return true;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Keep slot numbers even for a blank (torn) line, the day files are laid out by them
+                slots.put(CustomerRegistry.normalizeMeterCode(line), meterCodes.size());
+                meterCodes.add(line);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public synchronized int getMeterCount() {
+        return meterCodes.size();
+    }
+
+    // Stores the watt-hours a meter used in one interval (0-95) of a day (LocalDate.toEpochDay)
+    public synchronized boolean put(String meterCode, long epochDay, int interval, int wattHours) {
+        if (interval < 0 || interval >= INTERVALS_PER_DAY) {
+            throw new IllegalArgumentException("interval " + interval);
+        }
+        int slot = slotFor(meterCode);
+        if (slot < 0) {
+            return false;
+        }
+        try {
+            ByteBuffer block = day(epochDay).block(slot / BLOCK_SLOTS, true);
+            block.putInt((slot % BLOCK_SLOTS) * SLOT_BYTES + interval * 4, wattHours);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // The meter's slot, given one (and written to meters.txt) the first time the meter is seen.
+    // The line is written out at once: a slot must never be handed out twice, even after a crash.
+    private int slotFor(String meterCode) {
+        String key = CustomerRegistry.normalizeMeterCode(meterCode);
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        try {
+            if (metersWriter == null) {
+                metersWriter = new BufferedWriter(new FileWriter(new File(directory, METERS_FILE), true));
+            }
+            metersWriter.write(meterCode);
+            metersWriter.newLine();
+            metersWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        slots.put(key, meterCodes.size());
+        meterCodes.add(meterCode);
+        return meterCodes.size() - 1;
+    }
+
+    // Watt-hours one meter used from the start of day `from` to the end of day `to`
+    public synchronized long consumption(String meterCode, long fromDay, long toDay) {
+        Integer slot = slots.get(CustomerRegistry.normalizeMeterCode(meterCode));
+        if (slot == null) {
+            return 0;
+        }
+        long total = 0;
+        try {
+            for (long d = fromDay; d <= toDay; d++) {
+                ByteBuffer block = existingBlock(d, slot / BLOCK_SLOTS);
+                if (block == null) continue;
+                int offset = (slot % BLOCK_SLOTS) * SLOT_BYTES;
+                for (int i = 0; i < INTERVALS_PER_DAY; i++) {
+                    total += block.getInt(offset + i * 4);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return total;
+    }
+
+    // Watt-hours every meter used from the start of day `from` to the end of day `to`, by slot.
+    // Walks each day file front to back, so the whole fleet costs one sequential read per day.
+    private long[] consumptionBySlot(long fromDay, long toDay) throws IOException {
+        long[] totals = new long[meterCodes.size()];
+        int blocks = (totals.length + BLOCK_SLOTS - 1) / BLOCK_SLOTS;
+        for (long d = fromDay; d <= toDay; d++) {
+            for (int b = 0; b < blocks; b++) {
+                ByteBuffer block = existingBlock(d, b);
+                if (block == null) continue;
+                int slotsInBlock = Math.min(BLOCK_SLOTS, totals.length - b * BLOCK_SLOTS);
+                for (int s = 0; s < slotsInBlock; s++) {
+                    long sum = 0;
+                    int offset = s * SLOT_BYTES;
+                    for (int i = 0; i < INTERVALS_PER_DAY; i++) {
+                        sum += block.getInt(offset + i * 4);
+                    }
+                    totals[b * BLOCK_SLOTS + s] += sum;
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Turns each smart meter's consumption over the billing period into a monthly reading
+    // (current reading + the period's kWh, rounded), journaled like any other reading.
+    // Returns the number of customers given a reading, or -1 if the interval data cannot be read or a
+    // reading cannot be journaled (it stops there; the readings before it are journaled).
+    public int closeBillingPeriod(List<OldCustomer> customers, CustomerJournal journal, LocalDate from, LocalDate to) {
+        long[] totals;
+        List<String> codes;
+        synchronized (this) {
+            try {
+                totals = consumptionBySlot(from.toEpochDay(), to.toEpochDay());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return -1;
+            }
+            codes = new ArrayList<>(meterCodes);
+        }
+        int applied = 0;
+        for (int slot = 0; slot < totals.length; slot++) {
+            long units = (totals[slot] + 500) / 1000;
+            if (units <= 0) continue; // No consumption, nothing to bill
+            OldCustomer customer = OldCustomer.findCustomerByMeterCode(customers, codes.get(slot));
+            if (customer == null || customer.isStopAndCancel()) continue;
+            synchronized (customer.getLock()) {
+                long reading = customer.getCurrentReading() + units;
+                if (reading > Integer.MAX_VALUE || !customer.applyMonthlyReading((int) reading)) continue;
+            }
+            if (!journal.logReading(customer)) {
+                System.err.println("Could not journal the reading of " + customer.getMeterCode());
+                return -1;
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    // Forces the mapped days to disk. Written intervals survive a crash of the process without this
+    // (the pages belong to the OS), but not a crash of the machine.
+    public synchronized boolean force() {
+        for (Day day : mappedDays.values()) {
+            day.force();
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        for (Day day : mappedDays.values()) {
+            day.close();
+        }
+        mappedDays.clear();
+        if (metersWriter != null) {
+            try {
+                metersWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            metersWriter = null;
+        }
+    }
+
+    private Day day(long epochDay) throws IOException {
+        Day day = mappedDays.get(epochDay);
+        if (day == null) {
+            day = new Day(new File(directory, LocalDate.ofEpochDay(epochDay).format(DAY_FILE_FORMAT) + ".dat"));
+            mappedDays.put(epochDay, day);
+        }
+        return day;
+    }
+
+    // The block if that day has data for it, without creating the day file or growing it
+    private ByteBuffer existingBlock(long epochDay, int block) throws IOException {
+        Day day = mappedDays.get(epochDay);
+        if (day == null) {
+            File file = new File(directory, LocalDate.ofEpochDay(epochDay).format(DAY_FILE_FORMAT) + ".dat");
+            if (!file.exists()) return null;
+            day = day(epochDay);
+        }
+        return day.block(block, false);
+    }
+
+    // One mapped day file
+    private static class Day {
+        private final File file;
+        private RandomAccessFile raf;
+        private MappedByteBuffer[] blocks = new MappedByteBuffer[0];
+
+        Day(File file) {
+            this.file = file;
+        }
+
+        // Maps the block, creating it (zero-filled, by growing the file) if asked to
+        ByteBuffer block(int index, boolean create) throws IOException {
+            if (index < blocks.length && blocks[index] != null) {
+                return blocks[index];
+            }
+            if (raf == null) {
+                raf = new RandomAccessFile(file, "rw");
+            }
+            long start = index * BLOCK_BYTES;
+            if (!create && raf.length() < start + BLOCK_BYTES) {
+                return null;
+            }
+            if (index >= blocks.length) {
+                blocks = Arrays.copyOf(blocks, index + 1);
+            }
+            // Mapping past the end of a read-write file extends it
+            blocks[index] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, start, BLOCK_BYTES);
+            return blocks[index];
+        }
+
+        void force() {
+            for (MappedByteBuffer block : blocks) {
+                if (block != null) block.force();
+            }
+        }
+
+        void close() {
+            force();
+            blocks = new MappedByteBuffer[0];
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                raf = null;
+            }
+        }
+    }
+}
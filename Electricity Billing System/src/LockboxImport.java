@@ -0,0 +1,127 @@
+import java.io.*;
+import java.util.List;
+
+// Import of the daily bank lockbox file: the payments customers made at the bank, credited to the
+// operator the bank's collections are booked under. The file is comma separated:
+//   H,BANK_ID,FILE_DATE                  header, once
+//   D,METER_CODE,AMOUNT[,BANK_REFERENCE] one per payment; AMOUNT may carry zero piastres ("150.00")
+//   T,RECORD_COUNT,TOTAL_AMOUNT          trailer, once, with the control totals of the D records
+// A truncated or damaged file must not be half applied, so verify checks the trailer against the
+// detail records first; importFile then applies the payments like PaymentImport.
+public class LockboxImport extends PaymentImport {
+    private String bankId;
+    private String fileDate;
+
+    public LockboxImport(List<OldCustomer> customers, CustomerJournal journal, List<Operator> operators, Operator operator, String operatorsFile, PaymentLedger ledger) {
+        super(customers, journal, operators, operator, operatorsFile, ledger);
+    }
+
+    public String getBankId() { return bankId; }
+    public String getFileDate() { return fileDate; }
+
+    // Reads the whole file once without applying anything. Returns null if the trailer's record count
+    // and amount total match the detail records, otherwise why the file must not be imported.
+    public static String verify(String inputFile) {
+        try (BufferedReader in = new BufferedReader(new FileReader(inputFile), 1 << 16)) {
+            String line;
+            boolean header = false;
+            String trailer = null;
+            long count = 0;
+            long total = 0;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#' || line.trim().isEmpty()) {
+                    continue;
+                }
+                if (trailer != null) {
+                    return "Records found after the trailer";
+                }
+                if (line.startsWith("H,")) {
+                    if (header || count > 0) return "Header is not the first record";
+                    header = true;
+                } else if (line.startsWith("D,")) {
+                    count++;
+                    int amountStart = line.indexOf(',', 2) + 1;
+                    if (amountStart == 0) continue; // Rejected on import
+                    try {
+                        total += parseAmount(line, amountStart, fieldEnd(line, amountStart));
+                    } catch (NumberFormatException e) {
+                        // Rejected on import; the bank's total still includes it, so it cannot match
+                        return "Detail record " + count + " has an invalid amount (" + e.getMessage() + ")";
+                    }
+                } else if (line.startsWith("T,")) {
+                    trailer = line;
+                } else {
+                    return "Unknown record type: " + line;
+                }
+            }
+            if (!header) return "Header record missing";
+            if (trailer == null) return "Trailer record missing, the file may be truncated";
+            int comma = trailer.indexOf(',', 2);
+            if (comma < 0) return "Trailer is not T,RECORD_COUNT,TOTAL_AMOUNT";
+            long expectedCount;
+            long expectedTotal;
+            try {
+                expectedCount = parseInt(trailer, 2, comma);
+                expectedTotal = parseAmount(trailer, comma + 1, fieldEnd(trailer, comma + 1));
+            } catch (NumberFormatException e) {
+                return "Trailer is not T,RECORD_COUNT,TOTAL_AMOUNT (" + e.getMessage() + ")";
+            }
+            if (expectedCount != count) {
+                return "Trailer expects " + expectedCount + " payments, the file has " + count;
+            }
+            if (expectedTotal != total) {
+                return "Trailer expects " + expectedTotal + " EGP in total, the payments add up to " + total + " EGP";
+            }
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "Could not read " + inputFile;
+        }
+    }
+
+    // Header and trailer are control records, not payments
+    @Override
+    protected boolean isControlRecord(String line) {
+        if (line.startsWith("H,")) {
+            int comma = line.indexOf(',', 2);
+            bankId = (comma < 0 ? line.substring(2) : line.substring(2, comma)).trim();
+            fileDate = comma < 0 ? null : line.substring(comma + 1).trim();
+            return true;
+        }
+        return line.startsWith("T,");
+    }
+
+    @Override
+    protected String applyRecord(String line) throws IOException {
+        if (!line.startsWith("D,")) {
+            return "Unknown record type";
+        }
+        int comma = line.indexOf(',', 2);
+        if (comma < 0) {
+            return "Record is not D,METER_CODE,AMOUNT";
+        }
+        String meterCode = line.substring(2, comma).trim();
+        int amount = parseAmount(line, comma + 1, fieldEnd(line, comma + 1));
+        return applyPayment(meterCode, amount);
+    }
+
+    private static int fieldEnd(String line, int from) {
+        int comma = line.indexOf(',', from);
+        return comma < 0 ? line.length() : comma;
+    }
+
+    // Whole pounds, optionally followed by zero piastres; bills have no piastres, so any are an error
+    private static int parseAmount(String s, int from, int to) {
+        int dot = s.indexOf('.', from);
+        if (dot < 0 || dot >= to) {
+            return parseInt(s, from, to);
+        }
+        for (int i = dot + 1; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch != '0' && ch != ' ') {
+                throw new NumberFormatException("amount has piastres: " + s.substring(from, to).trim());
+            }
+        }
+        return parseInt(s, from, dot);
+    }
+}
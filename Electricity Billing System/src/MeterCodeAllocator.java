@@ -0,0 +1,104 @@
+import java.util.BitSet;
+import java.util.Locale;
+
+// Hands out meter codes for new customers. Codes used to be "MTR-" and the last four NID digits
+// (Customer.generateMeterCode), only 10,000 of them, so customers whose NIDs end alike collided and
+// could not register. New codes are "MTR-" and seven digits, ten million of them, issued in order.
+//
+// Used codes are kept in bitmaps (1.25 MB for the whole space): one bit per seven-digit code, and one
+// per legacy four-digit code. CustomerRegistry marks every code it indexes, so existing customers keep
+// their codes, legacy ones included, and the allocator is rebuilt whenever the customers are loaded;
+// nothing needs migrating. Codes in other formats are not tracked here (the registry's meter code
+// index still refuses duplicates).
+//
+// Allocation continues after the highest code in use, so the codes of deleted customers (which may
+// still appear in reading history, interval data and the payment ledger) are not issued again until
+// the space runs out; only then are the gaps filled, from the start. Thread-safe.
+public class MeterCodeAllocator {
+    public static final String PREFIX = "MTR-";
+    public static final int DIGITS = 7;
+    public static final int CAPACITY = 10_000_000;
+    private static final int LEGACY_DIGITS = 4;
+
+    private final BitSet used = new BitSet();
+    private final BitSet legacyUsed = new BitSet();
+    private int next;         // Where the search for a free code starts
+    private int count;
+
+    // "MTR-" and the number as seven digits
+    public static String format(int number) {
+        String digits = Integer.toString(number);
+        StringBuilder code = new StringBuilder(PREFIX.length() + DIGITS).append(PREFIX);
+        for (int i = digits.length(); i < DIGITS; i++) code.append('0');
+        return code.append(digits).toString();
+    }
+
+    // The next free code, marked as used; null when all ten million are taken
+    public synchronized String allocate() {
+        if (count >= CAPACITY) {
+            return null;
+        }
+        int number = used.nextClearBit(next);
+        if (number >= CAPACITY) {
+            number = used.nextClearBit(0); // Past the end: reuse the gaps left by deleted customers
+        }
+        used.set(number);
+        count++;
+        next = number + 1;
+        return format(number);
+    }
+
+    // Records a code already given to a customer; any format is accepted, see above
+    public synchronized void markUsed(String meterCode) {
+        String code = meterCode == null ? "" : meterCode.trim().toUpperCase(Locale.ROOT);
+        int number = parse(code, DIGITS);
+        if (number >= 0) {
+            if (!used.get(number)) {
+                used.set(number);
+                count++;
+            }
+            next = Math.max(next, number + 1);
+            return;
+        }
+        number = parse(code, LEGACY_DIGITS);
+        if (number >= 0) {
+            legacyUsed.set(number);
+        }
+    }
+
+    public synchronized boolean isUsed(String meterCode) {
+        String code = meterCode == null ? "" : meterCode.trim().toUpperCase(Locale.ROOT);
+        int number = parse(code, DIGITS);
+        if (number >= 0) {
+            return used.get(number);
+        }
+        number = parse(code, LEGACY_DIGITS);
+        return number >= 0 && legacyUsed.get(number);
+    }
+
+    // Seven-digit codes in use (or allocated)
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        used.clear();
+        legacyUsed.clear();
+        next = 0;
+        count = 0;
+    }
+
+    // The number of a "MTR-" code with exactly that many digits, or -1
+    private static int parse(String code, int digits) {
+        if (code.length() != PREFIX.length() + digits || !code.startsWith(PREFIX)) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = PREFIX.length(); i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+}
@@ -55,17 +55,42 @@ public class NewCustomer extends Customer {
         // notifyMeterReady();
     }
 
-    public  OldCustomer createNewCustomer( List<OldCustomer> OldCustomers) {
-        if (!duplicated){
-        OldCustomer newCustomer = new OldCustomer(getName(),getNid(), getAddress(), getEmail(), getMeterCode(), getRegion() , getNumber());
-        OldCustomers.add(newCustomer); // Add new customer to the list
-        // Save new customer data to the text file
-        FileSystem.saveCustomerData(OldCustomers, "customers.txt"); // This might need GUI feedback
-        duplicated=true;
-        return newCustomer;}
-        else{
-            // System.out.println("Can't add Customer already Exists in customers.txt "); // GUI feedback
-            return null;}
+    // Gives the customer a meter code of their own: from the registry's MeterCodeAllocator, or for a
+    // plain list the old code derived from the NID. Returns false if no code is left.
+    public boolean assignMeterCode(List<OldCustomer> customers) {
+        if (customers instanceof CustomerRegistry) {
+            String meterCode = ((CustomerRegistry) customers).allocateMeterCode();
+            if (meterCode == null) {
+                return false;
+            }
+            setMeterCode(meterCode);
+        } else {
+            generateMeterCode();
+        }
+        return true;
+    }
+
+    // Adds the customer to the list and records it in the journal (commit the journal to make it durable).
+    // Returns null if the customer is a duplicate or cannot be journaled.
+    public OldCustomer createNewCustomer(List<OldCustomer> OldCustomers, CustomerJournal journal) {
+        if (duplicated) {
+            return null;
+        }
+        OldCustomer newCustomer = new OldCustomer(getName(), getNid(), getAddress(), getEmail(), getMeterCode(), getRegion(), getNumber());
+        if (OldCustomers instanceof CustomerRegistry) {
+            // Atomic duplicate check, another cashier may be registering the same NID or meter code
+            if (!((CustomerRegistry) OldCustomers).addIfAbsent(newCustomer)) {
+                return null;
+            }
+        } else {
+            OldCustomers.add(newCustomer);
+        }
+        if (!journal.logUpsert(newCustomer)) {
+            OldCustomers.remove(newCustomer); // Not saved, so not registered either
+            return null;
+        }
+        duplicated = true;
+        return newCustomer;
     }
 
     // GUI will call setters directly after getting data from input fields
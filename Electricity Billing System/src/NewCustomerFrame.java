@@ -10,11 +10,11 @@ public class NewCustomerFrame extends JFrame {
     private JButton btnRegister, btnClear, btnBack, btnBrowseContract;
 
     private List<OldCustomer> customersList; // Reference to the main list of customers
-    private String customersFilePath;
+    private CustomerJournal journal; // Journal of the customers file the list was loaded from
 
-    public NewCustomerFrame(List<OldCustomer> customers, String customersFile) {
+    public NewCustomerFrame(List<OldCustomer> customers, CustomerJournal journal) {
         this.customersList = customers;
-        this.customersFilePath = customersFile;
+        this.journal = journal;
 
         setTitle("New Customer Registration");
         setSize(500, 600);
@@ -110,17 +110,17 @@ public class NewCustomerFrame extends JFrame {
             return;
         }
 
-        if (!nid.matches("\\d{14}")) {
+        if (!Customer.NID_PATTERN.matcher(nid).matches()) {
             JOptionPane.showMessageDialog(this, "National ID must be exactly 14 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        if (!email.matches("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}$")) { // Basic email regex
+        if (!Customer.EMAIL_PATTERN.matcher(email).matches()) { // Basic email regex
             JOptionPane.showMessageDialog(this, "Invalid email format.", "Validation Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        if (!phoneNumberStr.matches("\\d{11}")) {
+        if (!Customer.PHONE_PATTERN.matcher(phoneNumberStr).matches()) {
             JOptionPane.showMessageDialog(this, "Phone number must be exactly 11 digits.", "Validation Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
@@ -133,11 +133,9 @@ public class NewCustomerFrame extends JFrame {
         }
 
         // Check for duplicate NID
-        for (OldCustomer existingCust : customersList) {
-            if (existingCust.getNid().equals(nid)) {
-                JOptionPane.showMessageDialog(this, "Error: Customer with NID " + nid + " already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+        if (OldCustomer.findCustomerByNid(customersList, nid) != null) {
+            JOptionPane.showMessageDialog(this, "Error: Customer with NID " + nid + " already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
         NewCustomer newCust = new NewCustomer();
@@ -148,25 +146,27 @@ public class NewCustomerFrame extends JFrame {
         newCust.setRegion(region);
         newCust.setNumber(phoneNumber); // Assumes setNumber in Customer takes long
         newCust.setContract(contractPath);
-        newCust.generateMeterCode(); // Generate meter code
-
-        // Check for duplicate Meter Code (though less likely if NID is unique and meter code derived from NID)
-         for (OldCustomer existingCust : customersList) {
-            if (existingCust.getMeterCode().equals(newCust.getMeterCode())) {
-                JOptionPane.showMessageDialog(this, "Error: Customer with generated Meter Code " + newCust.getMeterCode() + " already exists (duplicate NID suffix).", "Registration Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+        if (!newCust.assignMeterCode(customersList)) { // Unique code from the registry's allocator
+            JOptionPane.showMessageDialog(this, "No meter codes are left to assign.", "Registration Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Check for duplicate Meter Code (only possible for a plain list, whose codes come from the NID)
+        if (OldCustomer.findCustomerByMeterCode(customersList, newCust.getMeterCode()) != null) {
+            JOptionPane.showMessageDialog(this, "Error: Customer with generated Meter Code " + newCust.getMeterCode() + " already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
-        OldCustomer registeredCustomer = newCust.createNewCustomer(customersList); // This adds to list and calls FileSystem.saveCustomerData
+        OldCustomer registeredCustomer = newCust.createNewCustomer(customersList, journal); // This adds to list and journals the customer
 
         if (registeredCustomer != null) {
+            boolean saved = journal.commit();
             JOptionPane.showMessageDialog(this, 
                 "Customer registered successfully!\nName: " + registeredCustomer.getName() + 
                 "\nMeter Code: " + registeredCustomer.getMeterCode() + 
                 "\nContract: " + newCust.getContract() + // Display contract path
-                "\nData saved to file.", 
-                "Registration Successful", JOptionPane.INFORMATION_MESSAGE);
+                (saved ? "\nData saved to file." : "\nWarning: the data could not be saved to disk, see the log."), 
+                saved ? "Registration Successful" : "Save Warning", saved ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
             clearFormFields();
             // Optionally close the window: dispose();
         } else { 
@@ -1,12 +1,17 @@
 import java.util.List;
 
 public class OldCustomer extends Customer {
-    private int currentReading;
-    private int lastReading;
-    private int balanceDue;
-    private int unpaidMonths;
-    private boolean complain;
-    private boolean StopAndCancel;
+    // Volatile so cashiers and batch jobs on other threads see each other's changes; compound
+    // changes (reading, payment, billing) are made holding getLock()
+    private volatile int currentReading;
+    private volatile int lastReading;
+    private volatile int balanceDue;
+    private volatile int unpaidMonths;
+    private volatile boolean complain;
+    private volatile boolean StopAndCancel;
+    private volatile CustomerRegistry registry; // Set while the customer belongs to a registry, which is told about changes
+    private int searchId = -1; // Id in the registry's CustomerSearchIndex, guarded by the index
+    private int registryIndex = -1; // Position in the registry's list, guarded by its structure lock
 
     public OldCustomer() {}
 
@@ -36,7 +41,9 @@ public class OldCustomer extends Customer {
     }
 
     public void setCurrentReading(int currentReading) {
+        int oldUsage = getTotalUsage();
         this.currentReading = currentReading;
+        if (registry != null) registry.consumptionChanged(this, oldUsage);
     }
 
     public int getLastReading() {
@@ -44,7 +51,9 @@ public class OldCustomer extends Customer {
     }
 
     public void setLastReading(int lastReading) {
+        int oldUsage = getTotalUsage();
         this.lastReading = lastReading;
+        if (registry != null) registry.consumptionChanged(this, oldUsage);
     }
 
     public int getBalanceDue() {
@@ -52,7 +61,9 @@ public class OldCustomer extends Customer {
     }
 
     public void setBalanceDue(int balanceDue) {
+        int oldBalance = this.balanceDue;
         this.balanceDue = balanceDue;
+        if (registry != null) registry.balanceChanged(this, oldBalance);
     }
 
     public int getUnpaidMonths() {
@@ -83,12 +94,83 @@ public class OldCustomer extends Customer {
         return currentReading - lastReading;
     }
 
+    // Region, meter code and NID are indexed by the registry, so changes to them are reported as well
+    @Override
+    public void setRegion(String region) {
+        synchronized (getLock()) {
+            String oldRegion = getRegion();
+            super.setRegion(region);
+            if (registry != null) registry.regionChanged(this, oldRegion);
+        }
+    }
+
+    @Override
+    public void setMeterCode(String meterCode) {
+        String oldMeterCode = getMeterCode();
+        super.setMeterCode(meterCode);
+        if (registry != null) registry.reindex(this, oldMeterCode, getNid());
+    }
+
+    @Override
+    public void setNid(String nid) {
+        String oldNid = getNid();
+        super.setNid(nid);
+        if (registry != null) registry.reindex(this, getMeterCode(), oldNid);
+    }
+
+    // Name and phone number are only in the registry's search index
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        if (registry != null) registry.searchTextChanged(this);
+    }
+
+    @Override
+    public void setNumber(long number) {
+        super.setNumber(number);
+        if (registry != null) registry.searchTextChanged(this);
+    }
+
+    @Override
+    public void setNumber(String phoneNumberStr) {
+        super.setNumber(phoneNumberStr);
+        if (registry != null) registry.searchTextChanged(this);
+    }
+
+    CustomerRegistry getRegistry() {
+        return registry;
+    }
+
+    void setRegistry(CustomerRegistry registry) {
+        this.registry = registry;
+    }
+
+    int getSearchId() {
+        return searchId;
+    }
+
+    void setSearchId(int searchId) {
+        this.searchId = searchId;
+    }
+
+    int getRegistryIndex() {
+        return registryIndex;
+    }
+
+    void setRegistryIndex(int registryIndex) {
+        this.registryIndex = registryIndex;
+    }
+
+    // Lock to hold while changing this customer: the registry's stripe for its meter code, or the
+    // customer itself when it is not registered
+    public Object getLock() {
+        CustomerRegistry r = registry;
+        return r != null ? r.lockFor(getMeterCode()) : this;
+    }
+
     // Method for entering monthly reading, returns a status message for GUI
     public String enterMonthlyReading(int monthlyReading) {
-        if (monthlyReading > currentReading) {
-            setLastReading(currentReading);
-            setCurrentReading(monthlyReading);
-            unpaidMonths++;
+        if (applyMonthlyReading(monthlyReading)) {
             String message = "Monthly reading updated. Current reading: " + monthlyReading + ", Last reading: " + lastReading + ".";
             if (unpaidMonths >= 3) {
                 message += "\nWarning: You haven't paid for " + unpaidMonths + " months. Please check your notifications.";
@@ -101,11 +183,37 @@ public class OldCustomer extends Customer {
         }
     }
 
+    // Applies a new monthly reading if it is greater than the current one (readings only go up).
+    // Returns false, changing nothing, otherwise. Used directly by bulk imports to skip the messages.
+    public boolean applyMonthlyReading(int monthlyReading) {
+        synchronized (getLock()) {
+            if (monthlyReading <= currentReading) {
+                return false;
+            }
+            setLastReading(currentReading);
+            setCurrentReading(monthlyReading);
+            unpaidMonths++;
+            CustomerRegistry r = registry;
+            if (r != null) r.readingTaken(this, monthlyReading);
+            return true;
+        }
+    }
+
     // Method for paying bill, returns a status message for GUI
     public String payBill(String meterCode, int paymentAmount) {
         if (!meterCode.equalsIgnoreCase(getMeterCode())) {
             return "Error: Meter code does not match.";
         }
+        String error = applyPayment(paymentAmount);
+        if (error != null) {
+            return error;
+        }
+        // FileSystem.saveCustomerData will be called by the GUI controller
+        return "Payment of " + paymentAmount + " successful. Remaining balance: 0.";
+    }
+
+    // Returns null if the amount settles the balance exactly, otherwise the reason it is refused
+    public String checkPayment(int paymentAmount) {
         if (balanceDue <= 0) {
             return "Error: No balance due.";
         }
@@ -115,15 +223,60 @@ public class OldCustomer extends Customer {
         if (paymentAmount > balanceDue) {
             return "Error: Payment amount (" + paymentAmount + ") is more than the balance due (" + balanceDue + "). Please pay the exact amount.";
         }
+        return null;
+    }
 
-        balanceDue = 0;
-        unpaidMonths = 0;
-        // FileSystem.saveCustomerData will be called by the GUI controller
-        return "Payment of " + paymentAmount + " successful. Remaining balance: 0.";
+    // Settles the balance if checkPayment accepts the amount. Returns null on success, otherwise the reason.
+    // Used by payBill and by the payment imports, which have already resolved the customer.
+    public String applyPayment(int paymentAmount) {
+        synchronized (getLock()) {
+            String error = checkPayment(paymentAmount);
+            if (error == null) {
+                setBalanceDue(0);
+                unpaidMonths = 0;
+            }
+            return error;
+        }
     }
 
-    // Static method to find customer by meter code - logic remains the same
+    // Undoes applyPayment when the payment could not be recorded. The balance had been exactly the
+    // amount paid; unpaidMonths is what it was before the payment.
+    public void revertPayment(int paymentAmount, int unpaidMonths) {
+        synchronized (getLock()) {
+            setBalanceDue(paymentAmount);
+            this.unpaidMonths = unpaidMonths;
+        }
+    }
+
+    // Adds this month's charge (Operator.computeMonthlyCharge) to the balance due.
+    // Returns the charge, or -1 without changing anything if the readings are invalid.
+    public int addMonthlyCharge(int pricePerUnit) {
+        synchronized (getLock()) {
+            int charge = Operator.computeMonthlyCharge(this, pricePerUnit);
+            if (charge >= 0) {
+                setBalanceDue(balanceDue + charge);
+            }
+            return charge;
+        }
+    }
+
+    // Same, priced with a tariff table
+    public int addMonthlyCharge(TariffTable tariffs) {
+        synchronized (getLock()) {
+            int charge = Operator.computeMonthlyCharge(this, tariffs);
+            if (charge >= 0) {
+                setBalanceDue(balanceDue + charge);
+            }
+            return charge;
+        }
+    }
+
+    // Static method to find customer by meter code
+    // Uses the hash index when given a CustomerRegistry, otherwise falls back to a linear scan
     public static OldCustomer findCustomerByMeterCode(List<OldCustomer> customers, String meterCode) {
+        if (customers instanceof CustomerRegistry) {
+            return ((CustomerRegistry) customers).findByMeterCode(meterCode);
+        }
         for (OldCustomer customer : customers) {
             if (customer.getMeterCode().equalsIgnoreCase(meterCode)) {
                 return customer;
@@ -132,6 +285,19 @@ public class OldCustomer extends Customer {
         return null;
     }
 
+    // Static method to find customer by national ID, same index/scan strategy as findCustomerByMeterCode
+    public static OldCustomer findCustomerByNid(List<OldCustomer> customers, String nid) {
+        if (customers instanceof CustomerRegistry) {
+            return ((CustomerRegistry) customers).findByNid(nid);
+        }
+        for (OldCustomer customer : customers) {
+            if (customer.getNid() != null && customer.getNid().equals(nid)) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return super.toString() + ", OldCustomer [currentReading=" + currentReading + ", lastReading=" + lastReading + ", balanceDue=" + balanceDue + ", unpaidMonths=" + unpaidMonths + ", complain=" + complain + ", StopAndCancel=" + StopAndCancel + "]";
@@ -1,39 +1,54 @@
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 // Scanner will not be used in GUI version for direct input in this class
 
 public class Operator {
-    private String operatorName;
-    private int totalCollected;
+    private volatile String operatorName;
+    // Credited without a lock, so cashiers crediting the same operator never wait for each other
+    private final LongAdder totalCollected = new LongAdder();
     private boolean duplicated; // This flag's logic might need review for GUI context
+    private volatile OperatorRegistry registry; // Set while registered; keeps the registry's name index current
 
     public Operator() {}
 
     public Operator(String operatorName) {
         this.operatorName = operatorName;
-        this.totalCollected = 0;
         this.duplicated = false; // Initialize duplicated status
     }
 
-    public Operator(String operatorName, int totalCollected) {
+    public Operator(String operatorName, long totalCollected) {
         this.operatorName = operatorName;
-        this.totalCollected = totalCollected;
+        this.totalCollected.add(totalCollected);
         this.duplicated = false; // Initialize duplicated status
     }
 
     // Method to collect payment, returns a status string for GUI
     public String collectPayment(OldCustomer customer, int paymentAmount) {
+        return collectPayment(customer, paymentAmount, null);
+    }
+
+    // Same, also recording the payment in the ledger (which then credits it to this operator)
+    public String collectPayment(OldCustomer customer, int paymentAmount, PaymentLedger ledger) {
         if (customer == null) {
             return "Error: Customer not found.";
         }
+        int unpaidMonths = customer.getUnpaidMonths(); // Restored if the ledger cannot record the payment
         // The OldCustomer.payBill method now returns a status string
         String paymentStatus = customer.payBill(customer.getMeterCode(), paymentAmount);
         
         // Check if payment was successful based on the message from payBill
         // This is a bit fragile; ideally, payBill would return a boolean or status code
         if (paymentStatus.startsWith("Payment of")) { // Assuming success message starts this way
-            totalCollected += paymentAmount; // Update total collected by the operator
+            if (ledger != null) {
+                if (!ledger.record(this, customer.getMeterCode(), paymentAmount)) {
+                    customer.revertPayment(paymentAmount, unpaidMonths);
+                    return "Payment was unsuccessful: Error: the payment could not be written to the payment ledger. The balance due is unchanged.";
+                }
+            } else {
+                addCollected(paymentAmount); // Update total collected by the operator
+            }
             // FileSystem.saveOperatorData and FileSystem.saveCustomerData will be called by GUI controller
-            return paymentStatus + "\nTotal collected by " + operatorName + " now: " + totalCollected + " EGP.";
+            return paymentStatus + "\nTotal collected by " + operatorName + " now: " + getTotalCollected() + " EGP.";
         } else {
             return "Payment was unsuccessful: " + paymentStatus;
         }
@@ -53,12 +68,10 @@ public class Operator {
     public String getBillsByRegion(List<OldCustomer> customers, String region) {
         StringBuilder billsText = new StringBuilder("📂 Bills in Region: " + region + "\n");
         boolean found = false;
-        for (OldCustomer customer : customers) {
-            if ((customer.getRegion()).equalsIgnoreCase(region.trim())) {
-                billsText.append("--------------------\n");
-                billsText.append(getBillDetails(customer)).append("\n");
-                found = true;
-            }
+        for (OldCustomer customer : RegionIndex.customersIn(customers, region)) {
+            billsText.append("--------------------\n");
+            billsText.append(getBillDetails(customer)).append("\n");
+            found = true;
         }
         if (!found) {
             billsText.append("No customers found in this region.");
@@ -87,18 +100,45 @@ public class Operator {
         if (pricePerUnit <= 0) {
             return "Error: Price per unit must be positive.";
         }
-        int consumption = customer.getCurrentReading() - customer.getLastReading();
-        if (consumption < 0) {
+        return defineTariff(customer, TariffTable.flat(pricePerUnit));
+    }
+
+    // Same, pricing the consumption with a tariff table (e.g. the regulator's tiered bands)
+    public String defineTariff(OldCustomer customer, TariffTable tariffs) {
+        if (customer == null) {
+            return "Error: Customer not found.";
+        }
+        int consumption;
+        int monthlyBalance;
+        int newBalanceDue;
+        synchronized (customer.getLock()) {
+            consumption = customer.getCurrentReading() - customer.getLastReading();
+            monthlyBalance = customer.addMonthlyCharge(tariffs);
+            newBalanceDue = customer.getBalanceDue();
+        }
+        if (monthlyBalance < 0) {
             return "Error: Cannot define tariff due to invalid readings (current < last).";
         }
-        int monthlyBalance = consumption * pricePerUnit;
-        int newBalanceDue = customer.getBalanceDue() + monthlyBalance;
-        customer.setBalanceDue(newBalanceDue);
         // FileSystem.saveCustomerData will be called by GUI controller
         return "✅ New bill defined: " + monthlyBalance + " EGP for consumption of " + consumption + " units." +
                "\n✅ Updated total balance due: " + newBalanceDue + " EGP.";
     }
 
+    // Charge for the customer's current consumption, or -1 if the readings are invalid (current < last).
+    // Shared by defineTariff and BillingRun so both bill with the same rule.
+    public static int computeMonthlyCharge(OldCustomer customer, int pricePerUnit) {
+        int consumption = customer.getCurrentReading() - customer.getLastReading();
+        if (consumption < 0) {
+            return -1;
+        }
+        return consumption * pricePerUnit;
+    }
+
+    // Same with a tariff table, which prices by the customer's region
+    public static int computeMonthlyCharge(OldCustomer customer, TariffTable tariffs) {
+        return tariffs.charge(customer.getRegion(), customer.getCurrentReading() - customer.getLastReading());
+    }
+
     // Method to stop meter and cancel subscription, returns a status string for GUI
     public String stopMeterAndCancelSubscription(OldCustomer customer) {
         if (customer == null) {
@@ -114,14 +154,35 @@ public class Operator {
     }
 
     public String getOperatorName() { return operatorName; }
-    public double getTotalCollected() { return totalCollected; }
+    public long getTotalCollected() { return totalCollected.sum(); }
 
-    public void setOperatorName(String operatorName) {
+    public synchronized void setOperatorName(String operatorName) {
+        String oldName = this.operatorName;
         this.operatorName = operatorName;
+        OperatorRegistry r = registry;
+        if (r != null) r.renamed(this, oldName);
+    }
+
+    // Corrects the total (admin update) by adding the difference, so a credit landing meanwhile is
+    // kept on top of the new total instead of being overwritten
+    public synchronized void setTotalCollected(long total) {
+        totalCollected.add(total - totalCollected.sum());
     }
 
-    public void setTotalCollected(int totalCollected) {
-        this.totalCollected = totalCollected;
+    // Credits an already accepted payment to this operator (collectPayment and payment imports)
+    public void addCollected(int paymentAmount) {
+        totalCollected.add(paymentAmount);
+    }
+
+    // Registration with an OperatorRegistry, which renames report back to
+    synchronized void attach(OperatorRegistry registry) {
+        this.registry = registry;
+    }
+
+    synchronized void detach(OperatorRegistry registry) {
+        if (this.registry == registry) {
+            this.registry = null;
+        }
     }
 
     public boolean isDuplicated() {
@@ -143,8 +204,12 @@ public class Operator {
         }
     }
 
-    // Static method to find operator by name - logic remains the same
+    // Static method to find operator by name
+    // Uses the name index when given an OperatorRegistry, otherwise falls back to a linear scan
     public static Operator findOperatorByName(List<Operator> operators, String operatorName) {
+        if (operators instanceof OperatorRegistry) {
+            return ((OperatorRegistry) operators).findByName(operatorName);
+        }
         for (Operator operator : operators) {
             if (operator.getOperatorName().equalsIgnoreCase(operatorName)) {
                 return operator;
@@ -0,0 +1,107 @@
+import java.util.AbstractList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// List of operators that keeps a name index, which operators report their renames back to.
+// Like CustomerRegistry it replaces the plain list the GUI used to hold; operators are few and
+// rarely added, so the list itself is copy-on-write, and the grand total is the sum of their
+// LongAdder totals: crediting a payment (Operator.addCollected) takes no lock at all.
+public class OperatorRegistry extends AbstractList<Operator> implements RandomAccess {
+    private final CopyOnWriteArrayList<Operator> operators = new CopyOnWriteArrayList<>();
+    private final Map<String, Operator> byName = new ConcurrentHashMap<>();
+
+    // Operator names are matched case-insensitively (equalsIgnoreCase) everywhere in the system
+    public static String normalizeName(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Operator findByName(String name) {
+        String key = normalizeName(name);
+        return key == null ? null : byName.get(key);
+    }
+
+    // Total collected by all registered operators
+    public long getGrandTotal() {
+        long total = 0;
+        for (Operator operator : operators) {
+            total += operator.getTotalCollected();
+        }
+        return total;
+    }
+
+    @Override
+    public Operator get(int index) {
+        return operators.get(index);
+    }
+
+    @Override
+    public int size() {
+        return operators.size();
+    }
+
+    @Override
+    public synchronized void add(int index, Operator operator) {
+        operators.add(index, operator);
+        modCount++;
+        index(operator);
+    }
+
+    @Override
+    public synchronized Operator set(int index, Operator operator) {
+        Operator previous = operators.set(index, operator);
+        unindex(previous);
+        index(operator);
+        return previous;
+    }
+
+    @Override
+    public synchronized Operator remove(int index) {
+        Operator removed = operators.remove(index);
+        modCount++;
+        unindex(removed);
+        return removed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Operator operator : operators) {
+            operator.detach(this);
+        }
+        operators.clear();
+        byName.clear();
+        modCount++;
+    }
+
+    // Rename notification from a registered operator
+    synchronized void renamed(Operator operator, String oldName) {
+        removeName(normalizeName(oldName), operator);
+        String key = normalizeName(operator.getOperatorName());
+        if (key != null) byName.putIfAbsent(key, operator);
+    }
+
+    private void index(Operator operator) {
+        operator.attach(this);
+        String key = normalizeName(operator.getOperatorName());
+        if (key != null) byName.putIfAbsent(key, operator);
+    }
+
+    private void unindex(Operator operator) {
+        if (operator == null) return;
+        operator.detach(this);
+        removeName(normalizeName(operator.getOperatorName()), operator);
+    }
+
+    private void removeName(String key, Operator operator) {
+        if (key == null || !byName.remove(key, operator)) return;
+        // Keep the first remaining operator with that name findable, as the old linear scan did
+        for (Operator other : operators) {
+            if (key.equals(normalizeName(other.getOperatorName()))) {
+                byName.put(key, other);
+                return;
+            }
+        }
+    }
+}
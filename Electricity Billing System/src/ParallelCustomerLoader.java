@@ -0,0 +1,220 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Loads a text customer snapshot (the format of FileSystem.saveCustomerText) using every core.
+// The file is cut into chunks at record separator lines, each chunk is memory-mapped and parsed
+// on its own thread, and the results are added to the list in file order. Parsing works on the
+// decoded chars directly: no split, no map per record, and numbers are read without a String.
+// Records are built exactly as FileSystem.loadCustomerSnapshot does, including which ones are skipped.
+public class ParallelCustomerLoader {
+    // Files smaller than this are read by the single-threaded loader; the setup is not worth it
+    public static final long PARALLEL_THRESHOLD = 8L << 20;
+
+    private static final String SEPARATOR = "--------------------------------------------------";
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    private static final int SCAN_WINDOW = 1 << 16;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Loads customer data. Returns true on success, false on failure.
+    public boolean load(List<OldCustomer> customers, String filename) {
+        customers.clear();
+        File file = new File(filename);
+        if (!file.exists()) {
+            return true; // Same as FileSystem.loadCustomerSnapshot: could be the first run
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            long size = channel.size();
+            List<Callable<List<OldCustomer>>> chunks = new ArrayList<>();
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L) + 1);
+            long start = 0;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextRecordStart(channel, start + chunkSize, size);
+                long from = start, length = end - start;
+                chunks.add(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, length)));
+                start = end;
+            }
+            for (Future<List<OldCustomer>> chunk : pool.invokeAll(chunks)) {
+                customers.addAll(chunk.get());
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } catch (Exception e) {
+            // A chunk failed to map or parse (ExecutionException) or the load was interrupted
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Offset of the line after the first separator line at or after pos, or size if there is none
+    private static long nextRecordStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        // Step back one byte so a separator starting exactly at pos is seen as starting a line
+        long windowStart = pos - 1;
+        while (windowStart < size) {
+            window.clear();
+            int n = 0;
+            while (window.hasRemaining()) {
+                int read = channel.read(window, windowStart + n);
+                if (read < 0) break;
+                n += read;
+            }
+            byte[] b = window.array();
+            for (int i = 0; i + 1 + SEPARATOR.length() <= n; i++) {
+                if (b[i] == '\n' && isSeparator(b, i + 1)) {
+                    for (int j = i + 1 + SEPARATOR.length(); j < n; j++) {
+                        if (b[j] == '\n') return windowStart + j + 1;
+                    }
+                    break; // Line end is past this window, continue scanning from the separator
+                }
+            }
+            if (windowStart + n >= size) {
+                return size;
+            }
+            // Overlap the windows so a separator straddling the boundary is not missed
+            windowStart += Math.max(1, n - SEPARATOR.length() - 1);
+        }
+        return size;
+    }
+
+    private static boolean isSeparator(byte[] b, int from) {
+        for (int k = 0; k < SEPARATOR.length(); k++) {
+            if (b[from + k] != '-') return false;
+        }
+        return true;
+    }
+
+    // Parses whole records from one chunk; a record cut off by the end of the file is dropped as before.
+    // Decodes with the platform charset like the FileReader of the single-threaded loader; chunks are
+    // cut after '\n' bytes, which is a character boundary in every ASCII-compatible charset.
+    private static List<OldCustomer> parseChunk(MappedByteBuffer bytes) {
+        CharBuffer decoded = Charset.defaultCharset().decode(bytes);
+        char[] a = decoded.array();
+        int pos = decoded.arrayOffset() + decoded.position();
+        int limit = decoded.arrayOffset() + decoded.limit();
+        List<OldCustomer> result = new ArrayList<>();
+        RecordFields fields = new RecordFields();
+        while (pos < limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && a[lineEnd] != '\n') lineEnd++;
+            int end = lineEnd > pos && a[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (startsWith(a, pos, end, SEPARATOR)) {
+                if (!fields.isEmpty()) {
+                    OldCustomer c = fields.toCustomer();
+                    if (c != null) result.add(c);
+                    fields.clear();
+                }
+            } else {
+                fields.put(a, pos, end);
+            }
+            pos = lineEnd + 1;
+        }
+        return result;
+    }
+
+    private static boolean startsWith(char[] a, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int k = 0; k < prefix.length(); k++) {
+            if (a[from + k] != prefix.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // The "Key: value" lines of one record, kept as locals instead of a HashMap
+    private static class RecordFields {
+        private String name, nid, address, email, meterCode, region;
+        private String phone, current, last, balance, unpaid, complaint, stop;
+        private boolean empty = true;
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        void clear() {
+            name = nid = address = email = meterCode = region = null;
+            phone = current = last = balance = unpaid = complaint = stop = null;
+            empty = true;
+        }
+
+        // Splits at the first ": " and trims key and value, like line.split(": ", 2) in FileSystem
+        void put(char[] a, int from, int to) {
+            int colon = -1;
+            for (int i = from; i + 1 < to; i++) {
+                if (a[i] == ':' && a[i + 1] == ' ') { colon = i; break; }
+            }
+            if (colon < 0) return;
+            int ks = from, ke = colon;
+            while (ks < ke && a[ks] <= ' ') ks++;
+            while (ke > ks && a[ke - 1] <= ' ') ke--;
+            int vs = colon + 2, ve = to;
+            while (vs < ve && a[vs] <= ' ') vs++;
+            while (ve > vs && a[ve - 1] <= ' ') ve--;
+            String value = new String(a, vs, ve - vs);
+            empty = false;
+            switch (ke - ks) {
+                case 3: if (is(a, ks, "NID")) nid = value; break;
+                case 4: if (is(a, ks, "Name")) name = value; break;
+                case 5: if (is(a, ks, "Email")) email = value; break;
+                case 6: if (is(a, ks, "Region")) region = value; break;
+                case 7: if (is(a, ks, "Address")) address = value; break;
+                case 9: if (is(a, ks, "Complaint")) complaint = value; break;
+                case 10: if (is(a, ks, "Meter Code")) meterCode = value; break;
+                case 11: if (is(a, ks, "Balance Due")) balance = value; break;
+                case 12:
+                    if (is(a, ks, "Phone Number")) phone = value;
+                    else if (is(a, ks, "Last Reading")) last = value;
+                    break;
+                case 13: if (is(a, ks, "Unpaid Months")) unpaid = value; break;
+                case 15:
+                    if (is(a, ks, "Current Reading")) current = value;
+                    else if (is(a, ks, "Stop and Cancel")) stop = value;
+                    break;
+                default: break;
+            }
+        }
+
+        private static boolean is(char[] a, int from, String key) {
+            for (int k = 0; k < key.length(); k++) {
+                if (a[from + k] != key.charAt(k)) return false;
+            }
+            return true;
+        }
+
+        // Same defaults and skip rules as FileSystem.loadCustomerSnapshot
+        OldCustomer toCustomer() {
+            try {
+                OldCustomer c = new OldCustomer(name, nid, address, email, meterCode, region,
+                        Long.parseLong(phone == null ? "0" : phone),
+                        Integer.parseInt(current == null ? "0" : current),
+                        Integer.parseInt(last == null ? "0" : last),
+                        Integer.parseInt(balance == null ? "0" : balance));
+                c.setUnpaidMonths(Integer.parseInt(unpaid == null ? "0" : unpaid));
+                c.setComplain(Boolean.parseBoolean(complaint));
+                c.setStopAndCancel(Boolean.parseBoolean(stop));
+                return c;
+            } catch (NumberFormatException nfe) {
+                System.err.println("Skipping customer record due to number format error: " + name);
+                nfe.printStackTrace();
+            } catch (NullPointerException npe) {
+                System.err.println("Skipping customer record due to missing field: " + name);
+                npe.printStackTrace();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.util.List;
+
+// Bulk import of payments ("MTR-1234,150" per line) credited to one operator.
+// Every payment must settle the customer's balance exactly, as in OldCustomer.payBill.
+// Accepted payments are journaled in batches. With a payment ledger each payment is appended to it
+// and the operators file is only checkpointed when the ledger asks for it; without one the operators
+// file is rewritten once per batch.
+public class PaymentImport extends BatchImport {
+    private final List<OldCustomer> customers;
+    private final List<Operator> operators;
+    private final Operator operator;
+    private final String operatorsFile;
+    protected final PaymentLedger ledger;
+
+    public PaymentImport(List<OldCustomer> customers, CustomerJournal journal, List<Operator> operators, Operator operator, String operatorsFile) {
+        this(customers, journal, operators, operator, operatorsFile, null);
+    }
+
+    public PaymentImport(List<OldCustomer> customers, CustomerJournal journal, List<Operator> operators, Operator operator, String operatorsFile, PaymentLedger ledger) {
+        super(journal);
+        this.customers = customers;
+        this.operators = operators;
+        this.operator = operator;
+        this.operatorsFile = operatorsFile;
+        this.ledger = ledger;
+    }
+
+    @Override
+    protected boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "meter", 0, 5);
+    }
+
+    @Override
+    protected String applyRecord(String line) throws IOException {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            return "Record is not meterCode,amount";
+        }
+        String meterCode = line.substring(0, comma).trim();
+        int amount = parseInt(line, comma + 1, line.length());
+        return applyPayment(meterCode, amount);
+    }
+
+    // Resolves the meter code and applies one payment; null on success, otherwise the reason
+    // (IOException if it was applied but cannot be journaled)
+    protected String applyPayment(String meterCode, int amount) throws IOException {
+        OldCustomer customer = OldCustomer.findCustomerByMeterCode(customers, meterCode);
+        if (customer == null) {
+            return "Unknown meter code " + meterCode;
+        }
+        int unpaidMonths = customer.getUnpaidMonths();
+        String error = customer.applyPayment(amount);
+        if (error != null) {
+            return error;
+        }
+        if (ledger != null) {
+            if (!ledger.record(operator, customer.getMeterCode(), amount)) {
+                customer.revertPayment(amount, unpaidMonths);
+                return "Payment could not be written to the payment ledger";
+            }
+        } else {
+            operator.addCollected(amount);
+        }
+        if (!journal.logBalance(customer)) {
+            throw new IOException("could not journal the payment of " + customer.getMeterCode());
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean commitBatch() {
+        if (ledger == null) {
+            return FileSystem.saveOperatorData(operators, operatorsFile);
+        }
+        if (ledger.needsCheckpoint()) {
+            return ledger.saveCheckpoint(ledger.checkpoint(operators), operatorsFile);
+        }
+        return ledger.flush();
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Durable, append-only history of every accepted payment: one tab-separated line per payment
+// (timestamp millis, operator name, meter code, amount). Self-service payments have an empty operator.
+// Entries are numbered from 0 in the order they were written. Only the running totals per operator
+// and per meter code are held in memory; payment histories are read back from the files when asked.
+//
+// Operators.txt becomes a checkpoint of the operator totals: it is written with the number of
+// ledger entries its totals already include (see checkpoint), and on startup open replays the
+// entries after that onto the operators. So a payment costs one appended line, and the operators
+// file is rewritten only now and then instead of after every payment.
+//
+// The ledger file is the current segment. Once it holds getSegmentEntries() entries, the next
+// checkpoint renames it to "<ledger>.<number of its first entry>" and writes the totals up to there
+// to "<ledger>.totals", the way CustomerJournal compaction rotates its journal: startup then reads
+// the totals and the current segment instead of the whole history. Closed segments are never
+// rewritten; one renamed but not yet covered by the totals file (a crash in between) is replayed.
+public class PaymentLedger {
+    public static final String DEFAULT_FILE = "Payments.ledger";
+    public static final String TOTALS_SUFFIX = ".totals";
+    // Rewrite Operators.txt after this many new entries (see needsCheckpoint)
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    // Start a new segment at the first checkpoint after this many entries
+    public static final int DEFAULT_SEGMENT_ENTRIES = 100000;
+
+    // Lines of the totals file (first field)
+    private static final String ENTRIES = "E";          // entries included, grand total
+    private static final String OPERATOR = "O";         // operator name ("" for self-service), total
+    private static final String METER = "M";            // meter code, total
+
+    private final String ledgerFile;
+    private final String totalsFile;
+    private final Object rollLock = new Object(); // Taken before this: rolls and history reads see stable files
+    private final Map<String, Long> byOperator = new HashMap<>();
+    private final Map<String, Long> byMeter = new HashMap<>();
+    private long grandTotal;
+    private long entries;
+    private long segmentBase; // Number of the first entry in the current segment
+    private long checkpointedEntries;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private int segmentEntries = DEFAULT_SEGMENT_ENTRIES;
+    private BufferedWriter writer;
+    private FileOutputStream file; // Under writer, for forcing it to the disk
+
+    private PaymentLedger(String ledgerFile) {
+        this.ledgerFile = ledgerFile;
+        this.totalsFile = ledgerFile + TOTALS_SUFFIX;
+    }
+
+    // Loads the ledger totals and brings the (already loaded) operators up to date from the entries
+    // their file does not include yet. Returns null if the ledger cannot be read.
+    public static PaymentLedger open(String ledgerFile, List<Operator> operators, String operatorsFile) {
+        PaymentLedger ledger = new PaymentLedger(ledgerFile);
+        long included = FileSystem.loadOperatorLedgerEntries(operatorsFile);
+        if (!ledger.load(operators, included)) {
+            return null;
+        }
+        if (included > ledger.entries) {
+            // The ledger is behind the checkpoint (restored from an older copy?); nothing to replay
+            System.err.println(operatorsFile + " includes " + included + " ledger entries but " + ledgerFile + " holds " + ledger.entries);
+            included = ledger.entries;
+        }
+        ledger.checkpointedEntries = included;
+        return ledger;
+    }
+
+    // Reads the totals file, then every segment the totals do not cover into the totals, crediting
+    // the entries from number "included" on to the operators. A closed segment the totals do cover
+    // is read only if it holds entries the operators file does not include.
+    private boolean load(List<Operator> operators, long included) {
+        if (!loadTotals()) {
+            return false;
+        }
+        File current = new File(ledgerFile);
+        // A torn last line after a crash: cut it off, or the next payment would be appended onto it
+        if (!FileSystem.truncateToLastLine(current)) {
+            return false;
+        }
+        long totalsEntries = entries;
+        TreeMap<Long, File> segments = segments();
+        for (Map.Entry<Long, File> segment : segments.entrySet()) {
+            long base = segment.getKey();
+            if (base >= totalsEntries) {
+                if (base != entries) {
+                    System.err.println(segment.getValue() + " starts at entry " + base + " but " + entries + " entries come before it");
+                }
+                if (!replay(segment.getValue(), entries, true, operators, included)) {
+                    return false;
+                }
+            } else {
+                Long next = segments.higherKey(base);
+                long end = next == null ? totalsEntries : Math.min(next, totalsEntries);
+                if (end > included && !replay(segment.getValue(), base, false, operators, included)) {
+                    return false;
+                }
+            }
+        }
+        segmentBase = entries;
+        return replay(current, entries, true, operators, included);
+    }
+
+    // Reads one segment whose first entry is number "first". Entries are numbered by their line in
+    // the file, the numbering the operators file's checkpoint uses, so a malformed line still counts.
+    private boolean replay(File segment, long first, boolean addToTotals, List<Operator> operators, long included) {
+        if (!segment.exists()) {
+            return true;
+        }
+        long number = first;
+        try (BufferedReader reader = new BufferedReader(new FileReader(segment), 1 << 16)) {
+            String line;
+            for (; (line = reader.readLine()) != null; number++) {
+                Payment payment = parse(line);
+                if (payment == null) {
+                    System.err.println("Skipping malformed ledger line: " + line);
+                    if (addToTotals) entries++;
+                    continue;
+                }
+                if (addToTotals) {
+                    add(payment);
+                }
+                if (number >= included && !payment.operatorName.isEmpty()) {
+                    Operator operator = Operator.findOperatorByName(operators, payment.operatorName);
+                    if (operator != null) {
+                        operator.addCollected(payment.amount);
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private boolean loadTotals() {
+        File file = new File(totalsFile);
+        if (!file.exists()) {
+            return true;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                if (f[0].equals(ENTRIES) && f.length == 3) {
+                    entries = Long.parseLong(f[1]);
+                    grandTotal = Long.parseLong(f[2]);
+                } else if (f[0].equals(OPERATOR) && f.length == 3) {
+                    byOperator.put(CustomerJournal.unescape(f[1]), Long.parseLong(f[2]));
+                } else if (f[0].equals(METER) && f.length == 3) {
+                    byMeter.put(CustomerJournal.unescape(f[1]), Long.parseLong(f[2]));
+                } else {
+                    System.err.println("Malformed line in " + totalsFile + ": " + line);
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Records an accepted payment and credits it to the operator (null for self-service).
+    // The line is buffered; call flush to make it durable.
+    public synchronized boolean record(Operator operator, String meterCode, int amount) {
+        Payment payment = new Payment(System.currentTimeMillis(), operator == null ? "" : operator.getOperatorName(), meterCode, amount);
+        try {
+            if (writer == null) {
+                file = new FileOutputStream(ledgerFile, true);
+                writer = new BufferedWriter(new OutputStreamWriter(file), 1 << 16);
+            }
+            writer.write(payment.timestamp + "\t" + CustomerJournal.escape(payment.operatorName) + "\t"
+                    + CustomerJournal.escape(payment.meterCode) + "\t" + payment.amount + "\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        add(payment);
+        if (operator != null) {
+            // Still under the ledger lock, so a checkpoint never counts the entry without the credit.
+            // The credit is a lock-free add; what cashiers share is the one appended file.
+            operator.addCollected(amount);
+        }
+        return true;
+    }
+
+    public synchronized boolean flush() {
+        if (writer == null) {
+            return true;
+        }
+        try {
+            writer.flush();
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+            file = null;
+        }
+    }
+
+    // Copies of the operators with their totals, together with the number of ledger entries those
+    // totals include; taken under the ledger lock so no payment falls between the two
+    public synchronized Checkpoint checkpoint(List<Operator> operators) {
+        List<Operator> copies = new ArrayList<>();
+        for (Operator operator : operators) {
+            copies.add(new Operator(operator.getOperatorName(), operator.getTotalCollected()));
+        }
+        return new Checkpoint(copies, entries);
+    }
+
+    // Flushes the ledger and rewrites the operators file from a checkpoint, then starts a new
+    // segment if the current one is full. Safe on any thread.
+    public boolean saveCheckpoint(Checkpoint checkpoint, String operatorsFile) {
+        if (!flush() || !FileSystem.saveOperatorData(checkpoint.operators, operatorsFile, checkpoint.ledgerEntries)) {
+            return false;
+        }
+        synchronized (this) {
+            checkpointedEntries = Math.max(checkpointedEntries, checkpoint.ledgerEntries);
+        }
+        return roll();
+    }
+
+    // Renames the current segment and writes the totals up to its end. Only the rename and a copy
+    // of the totals happen under the ledger lock; payments go to a fresh file while the totals are
+    // written. Until they are, open replays the renamed segment, so a crash in between loses nothing.
+    private boolean roll() {
+        synchronized (rollLock) {
+            long totalsEntries, totalsGrand;
+            Map<String, Long> operatorTotals, meterTotals;
+            synchronized (this) {
+                if (entries - segmentBase < segmentEntries) {
+                    return true;
+                }
+                close();
+                File segment = new File(ledgerFile + "." + segmentBase);
+                try {
+                    Files.move(new File(ledgerFile).toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+                segmentBase = entries;
+                totalsEntries = entries;
+                totalsGrand = grandTotal;
+                operatorTotals = new HashMap<>(byOperator);
+                meterTotals = new HashMap<>(byMeter);
+            }
+            return saveTotals(totalsEntries, totalsGrand, operatorTotals, meterTotals);
+        }
+    }
+
+    private boolean saveTotals(long totalsEntries, long totalsGrand, Map<String, Long> operatorTotals, Map<String, Long> meterTotals) {
+        File temp = new File(totalsFile + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+             BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out), 1 << 16)) {
+            w.write(ENTRIES + "\t" + totalsEntries + "\t" + totalsGrand + "\n");
+            for (Map.Entry<String, Long> total : operatorTotals.entrySet()) {
+                w.write(OPERATOR + "\t" + CustomerJournal.escape(total.getKey()) + "\t" + total.getValue() + "\n");
+            }
+            for (Map.Entry<String, Long> total : meterTotals.entrySet()) {
+                w.write(METER + "\t" + CustomerJournal.escape(total.getKey()) + "\t" + total.getValue() + "\n");
+            }
+            w.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return FileSystem.replaceFile(temp, new File(totalsFile));
+    }
+
+    public synchronized boolean needsCheckpoint() {
+        return entries - checkpointedEntries >= checkpointInterval;
+    }
+
+    public synchronized void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public synchronized int getSegmentEntries() {
+        return segmentEntries;
+    }
+
+    public synchronized void setSegmentEntries(int segmentEntries) {
+        this.segmentEntries = segmentEntries;
+    }
+
+    public synchronized long size() {
+        return entries;
+    }
+
+    public synchronized long getGrandTotal() {
+        return grandTotal;
+    }
+
+    // Payment histories are read from the segments, oldest first, while payments go on.
+    // Null if a segment cannot be read.
+    public List<Payment> paymentsBy(String operatorName) {
+        return history(OperatorRegistry.normalizeName(operatorName), true);
+    }
+
+    public synchronized long totalCollectedBy(String operatorName) {
+        Long total = byOperator.get(OperatorRegistry.normalizeName(operatorName));
+        return total == null ? 0 : total;
+    }
+
+    public List<Payment> paymentsFor(String meterCode) {
+        return history(CustomerRegistry.normalizeMeterCode(meterCode), false);
+    }
+
+    public synchronized long totalPaidFor(String meterCode) {
+        Long total = byMeter.get(CustomerRegistry.normalizeMeterCode(meterCode));
+        return total == null ? 0 : total;
+    }
+
+    private List<Payment> history(String key, boolean byOperatorName) {
+        List<Payment> payments = new ArrayList<>();
+        synchronized (rollLock) { // No segment is renamed while it is being read
+            long currentEntries;
+            synchronized (this) {
+                try {
+                    if (writer != null) writer.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+                currentEntries = entries - segmentBase; // Complete lines only; later ones may be half written
+            }
+            List<File> files = new ArrayList<>(segments().values());
+            files.add(new File(ledgerFile));
+            for (int i = 0; i < files.size(); i++) {
+                File segment = files.get(i);
+                if (!segment.exists()) continue;
+                long limit = i == files.size() - 1 ? currentEntries : Long.MAX_VALUE;
+                try (BufferedReader reader = new BufferedReader(new FileReader(segment), 1 << 16)) {
+                    String line;
+                    for (long n = 0; n < limit && (line = reader.readLine()) != null; n++) {
+                        Payment payment = parse(line);
+                        if (payment != null && key.equals(byOperatorName
+                                ? OperatorRegistry.normalizeName(payment.operatorName)
+                                : CustomerRegistry.normalizeMeterCode(payment.meterCode))) {
+                            payments.add(payment);
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+        }
+        return payments;
+    }
+
+    // Closed segments by the number of their first entry
+    private TreeMap<Long, File> segments() {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File ledger = new File(ledgerFile).getAbsoluteFile();
+        String prefix = ledger.getName() + ".";
+        File[] files = ledger.getParentFile().listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                try {
+                    segments.put(Long.parseLong(name.substring(prefix.length())), file);
+                } catch (NumberFormatException e) {
+                    // The totals file and other neighbours
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static Payment parse(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length != 4) {
+            return null;
+        }
+        try {
+            return new Payment(Long.parseLong(f[0]), CustomerJournal.unescape(f[1]), CustomerJournal.unescape(f[2]), Integer.parseInt(f[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void add(Payment payment) {
+        entries++;
+        grandTotal += payment.amount;
+        byOperator.merge(OperatorRegistry.normalizeName(payment.operatorName), (long) payment.amount, Long::sum);
+        byMeter.merge(CustomerRegistry.normalizeMeterCode(payment.meterCode), (long) payment.amount, Long::sum);
+    }
+
+    // One ledger entry
+    public static class Payment {
+        private final long timestamp;
+        private final String operatorName;
+        private final String meterCode;
+        private final int amount;
+
+        Payment(long timestamp, String operatorName, String meterCode, int amount) {
+            this.timestamp = timestamp;
+            this.operatorName = operatorName;
+            this.meterCode = meterCode;
+            this.amount = amount;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public String getOperatorName() { return operatorName; }
+        public String getMeterCode() { return meterCode; }
+        public int getAmount() { return amount; }
+
+        @Override
+        public String toString() {
+            return new java.util.Date(timestamp) + "  " + meterCode + "  " + amount + " EGP  "
+                    + (operatorName.isEmpty() ? "(self-service)" : operatorName);
+        }
+    }
+
+    // Operator totals as of a given number of ledger entries
+    public static class Checkpoint {
+        private final List<Operator> operators;
+        private final long ledgerEntries;
+
+        Checkpoint(List<Operator> operators, long ledgerEntries) {
+            this.operators = operators;
+            this.ledgerEntries = ledgerEntries;
+        }
+
+        public long getLedgerEntries() {
+            return ledgerEntries;
+        }
+    }
+}
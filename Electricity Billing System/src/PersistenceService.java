@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+// Runs the GUI's file writes on one background thread so the event dispatch thread never waits for the disk.
+// Tasks run in submission order. A task submitted with a key replaces a task with the same key that
+// is still waiting in the queue, so a burst of edits ends in one save of the latest state; every
+// caller's callback still runs, on the EDT, once that save has finished.
+public class PersistenceService {
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "persistence-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Pending> queued = new HashMap<>();
+
+    // Queues a task. onDone (may be null) is called on the EDT with the task's result; false if it threw.
+    public void submit(String key, Callable<Boolean> task, Consumer<Boolean> onDone) {
+        synchronized (queued) {
+            Pending pending = key == null ? null : queued.get(key);
+            if (pending != null) {
+                pending.task = task;
+                if (onDone != null) pending.callbacks.add(onDone);
+                return;
+            }
+            pending = new Pending(key, task);
+            if (onDone != null) pending.callbacks.add(onDone);
+            try {
+                writer.execute(pending);
+            } catch (RejectedExecutionException e) {
+                // Shut down: the save cannot happen any more, so report it as failed rather than throw
+                System.err.println("Save submitted after shutdown was dropped.");
+                if (onDone != null) SwingUtilities.invokeLater(() -> onDone.accept(false));
+                return;
+            }
+            if (key != null) queued.put(key, pending);
+        }
+    }
+
+    // Runs a task in the background without coalescing
+    public void submit(Callable<Boolean> task, Consumer<Boolean> onDone) {
+        submit(null, task, onDone);
+    }
+
+    // Stops accepting work and waits for queued saves to reach the disk. Returns false on timeout.
+    public boolean shutdown(long timeoutMillis) {
+        writer.shutdown();
+        try {
+            return writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private class Pending implements Runnable {
+        private final String key;
+        private Callable<Boolean> task;
+        private final List<Consumer<Boolean>> callbacks = new ArrayList<>();
+
+        Pending(String key, Callable<Boolean> task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Callable<Boolean> current;
+            List<Consumer<Boolean>> toNotify;
+            synchronized (queued) {
+                // From here on a new submit with this key queues a fresh task
+                if (key != null) queued.remove(key);
+                current = task;
+                toNotify = new ArrayList<>(callbacks);
+            }
+            boolean ok;
+            try {
+                Boolean result = current.call();
+                ok = result != null && result;
+            } catch (Exception e) {
+                e.printStackTrace();
+                ok = false;
+            }
+            final boolean saved = ok;
+            if (!toNotify.isEmpty()) {
+                SwingUtilities.invokeLater(() -> {
+                    for (Consumer<Boolean> callback : toNotify) {
+                        callback.accept(saved);
+                    }
+                });
+            }
+        }
+    }
+}
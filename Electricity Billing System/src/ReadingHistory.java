@@ -0,0 +1,412 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// History of every meter reading, where OldCustomer itself only keeps the current and last one.
+// Each meter's readings are held as one byte array of (time, reading) pairs, each stored as the
+// zigzag varint of its difference to the previous pair: a monthly reading costs 4-6 bytes instead
+// of an object per reading. Every SKIP_INTERVAL-th pair is also remembered with its offset, so a
+// range query starts decoding near the range instead of at the first reading.
+// Times are epoch seconds; readings are kept in the order they were recorded.
+//
+// File: MAGIC, then blocks of (meter code, count, count delta-encoded pairs). A recorded reading is
+// appended as a block of one; compact rewrites the file as one block per meter, which is the
+// in-memory array as is. Fed by CustomerRegistry when a customer takes a new monthly reading.
+public class ReadingHistory {
+    public static final String DEFAULT_FILE = "Readings.history";
+    public static final int MAGIC = 0x45425248; // "EBRH"
+    private static final int SKIP_INTERVAL = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String historyFile;
+    private final Map<String, Series> byMeter = new ConcurrentHashMap<>();
+    private DataOutputStream out; // Guarded by this
+    private FileOutputStream file; // Under out, for forcing it to the disk
+    private long readingCount;
+    private long appendedBlocks; // Blocks of one since the last compaction
+
+    private ReadingHistory(String historyFile) {
+        this.historyFile = historyFile;
+    }
+
+    // Loads the history file (a missing file is an empty history). Returns null if it cannot be read.
+    public static ReadingHistory open(String historyFile) {
+        ReadingHistory history = new ReadingHistory(historyFile);
+        return history.load() ? history : null;
+    }
+
+    private boolean load() {
+        File file = new File(historyFile);
+        if (!file.exists()) {
+            return true;
+        }
+        long fileLength = file.length();
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                System.err.println(historyFile + " is not a reading history file");
+                return false;
+            }
+            valid = 4;
+            byte[] buffer = new byte[64];
+            long[] pair = new long[2];
+            while (valid < fileLength) {
+                String meterCode = BinarySnapshot.readString(in, buffer);
+                int count = (int) readVarLong(in);
+                Series series = seriesFor(meterCode);
+                pair[0] = 0;
+                pair[1] = 0;
+                long blockBytes = 0;
+                for (int i = 0; i < count; i++) {
+                    long timeDelta = readVarLong(in);
+                    long readingDelta = readVarLong(in);
+                    pair[0] += unzigzag(timeDelta);
+                    pair[1] += unzigzag(readingDelta);
+                    blockBytes += varLongSize(timeDelta) + varLongSize(readingDelta);
+                    series.append(pair[0], (int) pair[1]);
+                }
+                readingCount += count;
+                if (count == 1) appendedBlocks++;
+                valid += stringSize(meterCode) + varLongSize(count) + blockBytes;
+            }
+            return true;
+        } catch (EOFException e) {
+            // Torn last block after a crash: cut it off so new blocks are appended after the good ones.
+            // Part of it may already be in memory, so load the cut file again.
+            System.err.println("Discarding a torn block at the end of " + historyFile);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return false;
+            }
+            byMeter.clear();
+            readingCount = 0;
+            appendedBlocks = 0;
+            return load();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private Series seriesFor(String meterCode) {
+        return byMeter.computeIfAbsent(CustomerRegistry.normalizeMeterCode(meterCode), k -> new Series(meterCode));
+    }
+
+    // Records a reading taken at the given time (epoch seconds). The block is buffered; call flush to
+    // make it durable.
+    public synchronized boolean record(String meterCode, long time, int reading) {
+        try {
+            if (out == null) {
+                boolean fresh = !new File(historyFile).exists() || new File(historyFile).length() == 0;
+                file = new FileOutputStream(historyFile, true);
+                out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+                if (fresh) out.writeInt(MAGIC);
+            }
+            BinarySnapshot.writeString(out, meterCode);
+            writeVarLong(out, 1);
+            writeVarLong(out, zigzag(time));
+            writeVarLong(out, zigzag(reading));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        seriesFor(meterCode).append(time, reading);
+        readingCount++;
+        appendedBlocks++;
+        return true;
+    }
+
+    public synchronized boolean flush() {
+        if (out == null) {
+            return true;
+        }
+        try {
+            out.flush();
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Single-reading blocks repeat the meter code, so once they make up a good part of the file
+    // it is worth rewriting it with one block per meter
+    public synchronized boolean needsCompaction() {
+        return appendedBlocks >= 10000 && appendedBlocks * 4 >= readingCount;
+    }
+
+    // Rewrites the file as one block per meter, through a temporary file so a crash keeps the old one
+    public synchronized boolean compact() {
+        if (!flush()) {
+            return false;
+        }
+        File temp = new File(historyFile + ".tmp");
+        try (FileOutputStream tempFile = new FileOutputStream(temp);
+             DataOutputStream w = new DataOutputStream(new BufferedOutputStream(tempFile, BUFFER_SIZE))) {
+            w.writeInt(MAGIC);
+            for (Series series : byMeter.values()) {
+                series.writeTo(w);
+            }
+            w.flush();
+            tempFile.getFD().sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        close();
+        if (!FileSystem.replaceFile(temp, new File(historyFile))) {
+            return false;
+        }
+        appendedBlocks = 0;
+        return true;
+    }
+
+    public synchronized void close() {
+        flush();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+            file = null;
+        }
+    }
+
+    public synchronized long getReadingCount() {
+        return readingCount;
+    }
+
+    public int getMeterCount() {
+        return byMeter.size();
+    }
+
+    // Readings of one meter taken between from and to (epoch seconds, inclusive)
+    public List<Reading> readings(String meterCode, long from, long to) {
+        Series series = byMeter.get(CustomerRegistry.normalizeMeterCode(meterCode));
+        return series == null ? new ArrayList<>() : series.readings(from, to);
+    }
+
+    // Units consumed by one meter between from and to: its last reading up to `to` minus its last
+    // reading before `from` (or its first reading in the range if there is none before)
+    public long consumption(String meterCode, long from, long to) {
+        Series series = byMeter.get(CustomerRegistry.normalizeMeterCode(meterCode));
+        return series == null ? 0 : series.consumption(from, to);
+    }
+
+    // Total consumption of a group of customers, e.g. CustomerRegistry.customersInRegion
+    public long consumption(Collection<OldCustomer> customers, long from, long to) {
+        long total = 0;
+        for (OldCustomer customer : customers) {
+            total += consumption(customer.getMeterCode(), from, to);
+        }
+        return total;
+    }
+
+    // One recorded reading
+    public static class Reading {
+        private final long time;
+        private final int reading;
+
+        Reading(long time, int reading) {
+            this.time = time;
+            this.reading = reading;
+        }
+
+        public long getTime() { return time; }
+        public int getReading() { return reading; }
+
+        @Override
+        public String toString() {
+            return new Date(time * 1000) + "  " + reading;
+        }
+    }
+
+    // The delta-encoded readings of one meter
+    private static class Series {
+        private final String meterCode;
+        private byte[] data = new byte[8];
+        private int length;
+        private int count;
+        private long lastTime;
+        private int lastReading;
+        // Every SKIP_INTERVAL-th pair: its offset, and the pair before it that its deltas start from
+        private int[] skipOffsets = new int[1];
+        private long[] skipTimes = new long[1];
+        private int[] skipReadings = new int[1];
+
+        Series(String meterCode) {
+            this.meterCode = meterCode;
+        }
+
+        synchronized void append(long time, int reading) {
+            if (count % SKIP_INTERVAL == 0) {
+                int skip = count / SKIP_INTERVAL;
+                if (skip == skipOffsets.length) {
+                    skipOffsets = Arrays.copyOf(skipOffsets, skip * 2);
+                    skipTimes = Arrays.copyOf(skipTimes, skip * 2);
+                    skipReadings = Arrays.copyOf(skipReadings, skip * 2);
+                }
+                skipOffsets[skip] = length;
+                skipTimes[skip] = lastTime;
+                skipReadings[skip] = lastReading;
+            }
+            put(zigzag(time - lastTime));
+            put(zigzag((long) reading - lastReading));
+            lastTime = time;
+            lastReading = reading;
+            count++;
+        }
+
+        private void put(long value) {
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+            }
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        synchronized List<Reading> readings(long from, long to) {
+            List<Reading> result = new ArrayList<>();
+            Cursor c = seek(from);
+            while (c.next()) {
+                if (c.time > to) break;
+                if (c.time >= from) result.add(new Reading(c.time, c.reading));
+            }
+            return result;
+        }
+
+        synchronized long consumption(long from, long to) {
+            Cursor c = seek(from);
+            long before = c.index > 0 ? c.reading : -1; // A skip point's pair is before `from`
+            long first = -1;
+            long last = -1;
+            while (c.next()) {
+                if (c.time > to) break;
+                if (c.time < from) {
+                    before = c.reading;
+                } else {
+                    if (first < 0) first = c.reading;
+                    last = c.reading;
+                }
+            }
+            if (last < 0) {
+                return 0;
+            }
+            return last - (before >= 0 ? before : first);
+        }
+
+        // A cursor at the last skip point whose pair is before `from`, so the pair before the range is seen too
+        private Cursor seek(long from) {
+            int skips = (count + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+            int lo = 0;
+            int hi = skips - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                // The pair before skip point `mid` is skipTimes[mid]; start there only if it is before `from`
+                if (skipTimes[mid] < from) lo = mid;
+                else hi = mid - 1;
+            }
+            Cursor c = new Cursor();
+            if (skips > 0) {
+                c.offset = skipOffsets[lo];
+                c.index = lo * SKIP_INTERVAL;
+                c.time = skipTimes[lo];
+                c.reading = skipReadings[lo];
+            }
+            return c;
+        }
+
+        // Writes this meter as one block of the history file: the array already is its encoding
+        synchronized void writeTo(DataOutputStream w) throws IOException {
+            BinarySnapshot.writeString(w, meterCode);
+            writeVarLong(w, count);
+            w.write(data, 0, length);
+        }
+
+        private class Cursor {
+            int offset;
+            int index;
+            long time;
+            int reading;
+
+            boolean next() {
+                if (index == count) return false;
+                time += unzigzag(get());
+                reading += (int) unzigzag(get());
+                index++;
+                return true;
+            }
+
+            private long get() {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                return value;
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+            if (shift > 63 && (b & 0x80) != 0) {
+                throw new IOException("Corrupt varint");
+            }
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private static int stringSize(String s) {
+        int n = s.getBytes(StandardCharsets.UTF_8).length + 1;
+        return varLongSize(n) + n - 1;
+    }
+}
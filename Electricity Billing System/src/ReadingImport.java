@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.util.List;
+
+// Bulk import of monthly meter readings returned by the meter readers.
+// Each record is either CSV ("MTR-1234,5210") or fixed width (meter code padded to METER_CODE_WIDTH
+// characters, followed by the reading). Readings go through OldCustomer.applyMonthlyReading, the same
+// "must be greater than the current reading" rule as enterMonthlyReading, and are journaled in batches.
+// With a CustomerRegistry that has a ReadingHistory, the history is flushed with every batch too.
+public class ReadingImport extends BatchImport {
+    public static final int METER_CODE_WIDTH = 16;
+
+    private final List<OldCustomer> customers;
+
+    public ReadingImport(List<OldCustomer> customers, CustomerJournal journal) {
+        super(journal);
+        this.customers = customers;
+    }
+
+    @Override
+    protected boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "meter", 0, 5);
+    }
+
+    @Override
+    protected String applyRecord(String line) throws IOException {
+        int comma = line.indexOf(',');
+        String meterCode;
+        int reading;
+        if (comma >= 0) {
+            meterCode = line.substring(0, comma).trim();
+            reading = parseInt(line, comma + 1, line.length());
+        } else if (line.length() > METER_CODE_WIDTH) {
+            meterCode = line.substring(0, METER_CODE_WIDTH).trim();
+            reading = parseInt(line, METER_CODE_WIDTH, line.length());
+        } else {
+            return "Record is neither meterCode,reading nor fixed width";
+        }
+        OldCustomer customer = OldCustomer.findCustomerByMeterCode(customers, meterCode);
+        if (customer == null) {
+            return "Unknown meter code " + meterCode;
+        }
+        if (!customer.applyMonthlyReading(reading)) {
+            return "Reading " + reading + " is not greater than the current reading (" + customer.getCurrentReading() + ")";
+        }
+        if (!journal.logReading(customer)) {
+            throw new IOException("could not journal the reading of " + customer.getMeterCode());
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean commitBatch() {
+        ReadingHistory history = customers instanceof CustomerRegistry ? ((CustomerRegistry) customers).getReadingHistory() : null;
+        return history == null || history.flush();
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Secondary index of customers by region, with running totals per region.
+// Maintained by CustomerRegistry: customers are added/removed with the registry, and OldCustomer
+// reports balance, reading and region changes, so region reports only touch the customers of that
+// region and the statistics (count, balance due, consumption and its distribution, see
+// ConsumptionStats) are read without any scan.
+// Buckets are added and removed under the registry's structure lock; totals under each bucket's own lock.
+public class RegionIndex {
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // Regions are compared case-insensitively and ignoring surrounding spaces, like equalsIgnoreCase(region.trim())
+    public static String normalizeRegion(String region) {
+        return region == null ? "" : region.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Bucket getBucket(String region) {
+        return buckets.get(normalizeRegion(region));
+    }
+
+    // Customers of a region in the order they joined it, copied so it can be iterated while others
+    // register customers; empty if the region is unknown
+    public Collection<OldCustomer> customersIn(String region) {
+        Bucket bucket = getBucket(region);
+        return bucket == null ? Collections.<OldCustomer>emptyList() : bucket.getCustomers();
+    }
+
+    // Customers of a region: the region bucket of a CustomerRegistry, or a filtered scan of a plain list
+    public static Collection<OldCustomer> customersIn(List<OldCustomer> customers, String region) {
+        if (customers instanceof CustomerRegistry) {
+            return ((CustomerRegistry) customers).customersInRegion(region);
+        }
+        List<OldCustomer> matches = new ArrayList<>();
+        for (OldCustomer customer : customers) {
+            if ((customer.getRegion()).equalsIgnoreCase(region.trim())) {
+                matches.add(customer);
+            }
+        }
+        return matches;
+    }
+
+    // Display names of all non-empty regions, sorted
+    public List<String> getRegionNames() {
+        List<String> names = new ArrayList<>();
+        for (Bucket bucket : buckets.values()) {
+            if (!bucket.key.isEmpty()) {
+                names.add(bucket.displayName);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    void add(OldCustomer customer) {
+        String key = normalizeRegion(customer.getRegion());
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket(key, customer.getRegion() == null ? "" : customer.getRegion().trim());
+            buckets.put(key, bucket);
+        }
+        bucket.add(customer);
+    }
+
+    void remove(OldCustomer customer) {
+        removeFrom(normalizeRegion(customer.getRegion()), customer);
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    void regionChanged(OldCustomer customer, String oldRegion) {
+        if (normalizeRegion(oldRegion).equals(normalizeRegion(customer.getRegion()))) {
+            return;
+        }
+        removeFrom(normalizeRegion(oldRegion), customer);
+        add(customer);
+    }
+
+    void balanceChanged(OldCustomer customer, int oldBalance) {
+        Bucket bucket = getBucket(customer.getRegion());
+        if (bucket != null) {
+            bucket.balanceChanged(customer.getBalanceDue() - (long) oldBalance);
+        }
+    }
+
+    void consumptionChanged(OldCustomer customer, int oldConsumption) {
+        Bucket bucket = getBucket(customer.getRegion());
+        if (bucket != null) {
+            bucket.consumptionChanged(oldConsumption, customer.getTotalUsage());
+        }
+    }
+
+    private void removeFrom(String key, OldCustomer customer) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(customer) && bucket.getCustomerCount() == 0) {
+            buckets.remove(key, bucket);
+        }
+    }
+
+    // Customers of one region plus their running totals.
+    // Totals are updated under the bucket's lock so parallel billing runs can adjust them safely.
+    public static class Bucket {
+        private final String key;
+        private final String displayName;
+        private final LinkedHashSet<OldCustomer> customers = new LinkedHashSet<>();
+        private long totalBalanceDue;
+        private long totalConsumption;
+        private final ConsumptionStats consumptionStats = new ConsumptionStats();
+
+        Bucket(String key, String displayName) {
+            this.key = key;
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public synchronized List<OldCustomer> getCustomers() {
+            return new ArrayList<>(customers);
+        }
+
+        public synchronized int getCustomerCount() {
+            return customers.size();
+        }
+
+        public synchronized long getTotalBalanceDue() {
+            return totalBalanceDue;
+        }
+
+        public synchronized long getTotalConsumption() {
+            return totalConsumption;
+        }
+
+        // A copy of the region's consumption distribution (min, max, mean, percentiles)
+        public synchronized ConsumptionStats getConsumptionStats() {
+            return consumptionStats.copy();
+        }
+
+        private synchronized void add(OldCustomer customer) {
+            if (customers.add(customer)) {
+                totalBalanceDue += customer.getBalanceDue();
+                totalConsumption += customer.getTotalUsage();
+                consumptionStats.add(customer.getTotalUsage());
+            }
+        }
+
+        private synchronized boolean remove(OldCustomer customer) {
+            if (!customers.remove(customer)) {
+                return false;
+            }
+            totalBalanceDue -= customer.getBalanceDue();
+            totalConsumption -= customer.getTotalUsage();
+            consumptionStats.remove(customer.getTotalUsage());
+            return true;
+        }
+
+        private synchronized void balanceChanged(long balanceDelta) {
+            totalBalanceDue += balanceDelta;
+        }
+
+        private synchronized void consumptionChanged(int oldConsumption, int newConsumption) {
+            totalConsumption += newConsumption - (long) oldConsumption;
+            consumptionStats.change(oldConsumption, newConsumption);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Prices a month's consumption. Either flat (the price per unit an operator types in) or tiered, as
+// the regulator publishes it: consumption bands per region, each unit priced at the rate of the band
+// it falls in, plus an optional monthly service charge. Rates are in piasters (100 = 1 EGP); the
+// bill is rounded to whole pounds, since balances are kept in pounds.
+//
+// The table is compiled once into arrays (band upper bounds, rates, and the cost of all units below
+// each band), so charge() allocates nothing and a billing run over every customer stays CPU-bound.
+//
+// Tariff file, one section per region ("*" is the default for regions without their own):
+//   Region: *
+//   Service Charge: 100
+//   Band: 50 68        units 1-50 at 68 piasters
+//   Band: 100 78       units 51-100 at 78 piasters
+//   Band: * 145        every unit above at 145 piasters
+//   --------------------------------------------------
+public class TariffTable {
+    public static final String DEFAULT_FILE = "Tariffs.txt";
+
+    private final String name;
+    private final Tariff defaultTariff;
+    private final Map<String, Tariff> byRegion = new ConcurrentHashMap<>(); // By lower-case region
+    // Also by the region strings customers actually hold, so lookups do not need toLowerCase
+    private final Map<String, Tariff> byRegionSpelling = new ConcurrentHashMap<>();
+
+    private TariffTable(String name, Tariff defaultTariff) {
+        this.name = name;
+        this.defaultTariff = defaultTariff;
+    }
+
+    // Every unit at the same price, as Operator.defineTariff always billed
+    public static TariffTable flat(int pricePerUnit) {
+        if (pricePerUnit <= 0) {
+            throw new IllegalArgumentException("Price per unit must be positive.");
+        }
+        return new TariffTable(pricePerUnit + " EGP/unit", new Tariff(new int[] { Integer.MAX_VALUE }, new int[] { pricePerUnit * 100 }, 0));
+    }
+
+    // Loads and compiles a tariff file. Returns null (after reporting why) if it cannot be read or is invalid.
+    public static TariffTable load(String filename) {
+        Map<String, Tariff> tariffs = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String region = null;
+            int serviceCharge = 0;
+            List<int[]> bands = new ArrayList<>();
+            String line;
+            int lineNumber = 0;
+            while (true) {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null || line.startsWith("-----")) {
+                    if (region != null) {
+                        tariffs.put(region.toLowerCase(Locale.ROOT), compile(region, bands, serviceCharge));
+                    }
+                    if (line == null) break;
+                    region = null;
+                    serviceCharge = 0;
+                    bands.clear();
+                    continue;
+                }
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("Region: ")) {
+                    region = line.substring("Region: ".length()).trim();
+                } else if (region == null) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": expected \"Region: \"");
+                } else if (line.startsWith("Service Charge: ")) {
+                    serviceCharge = Integer.parseInt(line.substring("Service Charge: ".length()).trim());
+                } else if (line.startsWith("Band: ")) {
+                    String[] f = line.substring("Band: ".length()).trim().split("\\s+");
+                    if (f.length != 2) {
+                        throw new IllegalArgumentException("line " + lineNumber + ": expected \"Band: UP_TO RATE\"");
+                    }
+                    bands.add(new int[] { f[0].equals("*") ? Integer.MAX_VALUE : Integer.parseInt(f[0]), Integer.parseInt(f[1]) });
+                } else {
+                    throw new IllegalArgumentException("line " + lineNumber + ": unknown entry " + line);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            System.err.println("Invalid tariff file " + filename + ": " + e.getMessage());
+            return null;
+        }
+        Tariff defaultTariff = tariffs.remove("*");
+        if (defaultTariff == null) {
+            System.err.println("Invalid tariff file " + filename + ": no \"Region: *\" default section");
+            return null;
+        }
+        TariffTable table = new TariffTable("tariff " + new File(filename).getName(), defaultTariff);
+        table.byRegion.putAll(tariffs);
+        return table;
+    }
+
+    private static Tariff compile(String region, List<int[]> bands, int serviceCharge) {
+        if (bands.isEmpty()) {
+            throw new IllegalArgumentException("region " + region + " has no bands");
+        }
+        int[] upTo = new int[bands.size()];
+        int[] rates = new int[bands.size()];
+        for (int i = 0; i < upTo.length; i++) {
+            upTo[i] = bands.get(i)[0];
+            rates[i] = bands.get(i)[1];
+            if (rates[i] < 0 || upTo[i] <= (i == 0 ? 0 : upTo[i - 1])) {
+                throw new IllegalArgumentException("region " + region + ": bands must rise and rates must not be negative");
+            }
+        }
+        if (upTo[upTo.length - 1] != Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("region " + region + ": the last band must be \"Band: * RATE\"");
+        }
+        if (serviceCharge < 0) {
+            throw new IllegalArgumentException("region " + region + ": negative service charge");
+        }
+        return new Tariff(upTo, rates, serviceCharge);
+    }
+
+    // The month's bill in EGP for that consumption in that region, or -1 if the consumption is negative
+    // (invalid readings)
+    public int charge(String region, int consumption) {
+        if (consumption < 0) {
+            return -1;
+        }
+        return tariffFor(region).charge(consumption);
+    }
+
+    private Tariff tariffFor(String region) {
+        if (region == null || byRegion.isEmpty()) {
+            return defaultTariff;
+        }
+        Tariff tariff = byRegionSpelling.get(region);
+        if (tariff == null) {
+            // First customer with this spelling of the region; later ones hit the map above
+            tariff = byRegion.getOrDefault(region.trim().toLowerCase(Locale.ROOT), defaultTariff);
+            byRegionSpelling.put(region, tariff);
+        }
+        return tariff;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // One region's compiled bands
+    private static class Tariff {
+        private final int[] upTo;      // Last unit of each band; the last band is open (MAX_VALUE)
+        private final int[] rates;     // Piasters per unit
+        private final long[] below;    // Piasters for all units before each band
+        private final int serviceCharge;
+
+        Tariff(int[] upTo, int[] rates, int serviceCharge) {
+            this.upTo = upTo;
+            this.rates = rates;
+            this.serviceCharge = serviceCharge;
+            below = new long[upTo.length];
+            for (int i = 1; i < upTo.length; i++) {
+                below[i] = below[i - 1] + (long) (upTo[i - 1] - (i == 1 ? 0 : upTo[i - 2])) * rates[i - 1];
+            }
+        }
+
+        int charge(int consumption) {
+            int band = 0;
+            while (consumption > upTo[band]) {
+                band++;
+            }
+            long start = band == 0 ? 0 : upTo[band - 1];
+            long piasters = below[band] + (consumption - start) * rates[band] + serviceCharge;
+            return (int) Math.min((piasters + 50) / 100, Integer.MAX_VALUE);
+        }
+    }
+}
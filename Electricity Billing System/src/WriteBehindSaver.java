@@ -0,0 +1,74 @@
+import java.util.function.Consumer;
+import javax.swing.Timer;
+
+// Write-behind for state that changes too often to save on every change, like payments at a cashier window.
+// markDirty only counts the change; the save starts once the state has been dirty for delayMillis,
+// or straight away after maxChanges changes, whichever comes first. A failed save is retried on the
+// next tick. Use it on the EDT only: the save action runs there, so it can copy what it writes.
+public class WriteBehindSaver {
+    public static final int DEFAULT_DELAY_MILLIS = 2000;
+    public static final int DEFAULT_MAX_CHANGES = 100;
+
+    private final Consumer<Consumer<Boolean>> save;
+    private final Consumer<Integer> onFailure;
+    private final int maxChanges;
+    private final Timer timer;
+    private int pendingChanges;
+    private int savingChanges;
+    private boolean failing;
+
+    // save starts writing the current state and calls its argument with the result when it is on disk.
+    // onFailure (may be null) gets the number of unsaved changes when saving starts failing; it is not
+    // called again for the retries until a save succeeds.
+    public WriteBehindSaver(Consumer<Consumer<Boolean>> save, int delayMillis, int maxChanges, Consumer<Integer> onFailure) {
+        this.save = save;
+        this.onFailure = onFailure;
+        this.maxChanges = maxChanges;
+        this.timer = new Timer(delayMillis, e -> flush());
+        this.timer.setRepeats(false);
+    }
+
+    public WriteBehindSaver(Consumer<Consumer<Boolean>> save, Consumer<Integer> onFailure) {
+        this(save, DEFAULT_DELAY_MILLIS, DEFAULT_MAX_CHANGES, onFailure);
+    }
+
+    public void markDirty() {
+        pendingChanges++;
+        if (pendingChanges >= maxChanges) {
+            flush();
+        } else if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    // Starts saving now if anything changed since the last save
+    public void flush() {
+        timer.stop();
+        if (pendingChanges == 0) {
+            return;
+        }
+        int changes = pendingChanges;
+        pendingChanges = 0;
+        savingChanges += changes;
+        save.accept(saved -> {
+            savingChanges -= changes;
+            if (saved) {
+                failing = false;
+                return;
+            }
+            pendingChanges += changes;
+            if (!failing && onFailure != null) onFailure.accept(pendingChanges);
+            failing = true;
+            if (!timer.isRunning()) timer.start();
+        });
+    }
+
+    // Whether some changes are not on disk yet, counting saves that are still running
+    public boolean isDirty() {
+        return pendingChanges > 0 || savingChanges > 0;
+    }
+
+    public int getPendingChanges() {
+        return pendingChanges;
+    }
+}
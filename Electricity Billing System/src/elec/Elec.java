@@ -12,10 +12,19 @@ package elec;
 public class Elec {
 
     /**
-     * @param args the command line arguments
+     * Headless entry point: runs a batch command (billing run, imports, reports) without the GUI.
+     * The application classes live in the default package, which cannot be imported from a named
+     * package, so BatchRunner is looked up by name.
+     *
+     * @param args the command line arguments, see BatchRunner
      */
-    public static void main(String[] args) {
-        // TODO code application logic here
+    public static void main(String[] args) throws Exception {
+        Class<?> runner = Class.forName("BatchRunner");
+        try {
+            runner.getMethod("main", String[].class).invoke(null, (Object) args);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            throw (Exception) (e.getCause() instanceof Exception ? e.getCause() : e);
+        }
     }
     
 }